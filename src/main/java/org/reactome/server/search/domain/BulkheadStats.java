@@ -0,0 +1,35 @@
+package org.reactome.server.search.domain;
+
+/**
+ * Snapshot of the bulkhead limiting the concurrent Solr requests of a group of handlers (when solr.bulkhead.enabled).
+ * Rejected are the requests that could not get a slot within solr.bulkhead.wait milliseconds.
+ */
+public class BulkheadStats {
+    private final String name;
+    private final int limit;
+    private final int inFlight;
+    private final long rejected;
+
+    public BulkheadStats(String name, int limit, int inFlight, long rejected) {
+        this.name = name;
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.rejected = rejected;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,49 @@
+package org.reactome.server.search.domain;
+
+/**
+ * Counters of the search result cache
+ */
+public class CacheStats {
+    private final long hits;
+    private final long staleHits;
+    private final long misses;
+    private final long evictions;
+    private final int entries;
+    private final long weight;
+
+    public CacheStats(long hits, long staleHits, long misses, long evictions, int entries, long weight) {
+        this.hits = hits;
+        this.staleHits = staleHits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.weight = weight;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Expired entries served while being refreshed in background, or because Solr was unreachable
+     */
+    public long getStaleHits() {
+        return staleHits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+}
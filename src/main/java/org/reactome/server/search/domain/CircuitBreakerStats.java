@@ -0,0 +1,48 @@
+package org.reactome.server.search.domain;
+
+/**
+ * Snapshot of the circuit breaker in front of Solr (when solr.breaker.enabled).
+ * Opened, halfOpened and closed count the transitions to each state, rejected the requests failed fast while it was
+ * not closed. The last transition is a timestamp in milliseconds (0 when it has always been closed).
+ */
+public class CircuitBreakerStats {
+    private final String state;
+    private final long opened;
+    private final long halfOpened;
+    private final long closed;
+    private final long rejected;
+    private final long lastTransition;
+
+    public CircuitBreakerStats(String state, long opened, long halfOpened, long closed, long rejected, long lastTransition) {
+        this.state = state;
+        this.opened = opened;
+        this.halfOpened = halfOpened;
+        this.closed = closed;
+        this.rejected = rejected;
+        this.lastTransition = lastTransition;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public long getOpened() {
+        return opened;
+    }
+
+    public long getHalfOpened() {
+        return halfOpened;
+    }
+
+    public long getClosed() {
+        return closed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getLastTransition() {
+        return lastTransition;
+    }
+}
@@ -0,0 +1,45 @@
+package org.reactome.server.search.domain;
+
+/**
+ * Snapshot of the Solr client connection pool.
+ * For the HTTP/1.1 transport the numbers are connections. For the HTTP/2 transport leased and pending are requests
+ * (in flight and queued) since many of them are multiplexed over the same connection, and available and max are not
+ * applicable ({@link #NOT_APPLICABLE}): the client limits connections per host, not requests.
+ */
+public class ConnectionPoolStats {
+    public static final int NOT_APPLICABLE = -1;
+
+    private final String transport;
+    private final int leased;
+    private final int pending;
+    private final int available;
+    private final int max;
+
+    public ConnectionPoolStats(String transport, int leased, int pending, int available, int max) {
+        this.transport = transport;
+        this.leased = leased;
+        this.pending = pending;
+        this.available = available;
+        this.max = max;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public int getLeased() {
+        return leased;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public int getMax() {
+        return max;
+    }
+}
@@ -16,6 +16,7 @@ public class GroupedResult {
     private int numberOfGroups;
     private int numberOfMatches;
     private Set<TargetResult> targetResults;
+    private String nextCursor;
 
 
     public GroupedResult(List<Result> results, int rowCount, Integer numberOfGroups, int numberOfMatches) {
@@ -64,4 +65,16 @@ public class GroupedResult {
     public void setTargetResults(Set<TargetResult> targetResults) {
         this.targetResults = targetResults;
     }
+
+    /**
+     * When paging with a cursor, the cursor of the next page. It is the same as the cursor of the query once the
+     * last page has been reached, null otherwise
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
@@ -0,0 +1,56 @@
+package org.reactome.server.search.domain;
+
+/**
+ * Snapshot of the hedged requests to the Solr replicas (when solr.hedge is enabled and solr.host lists more than one).
+ * Hedged requests are the ones duplicated to a second replica, wins are the hedges that answered first and rejected
+ * are the ones that were due but exceeded the budget. The delay is the current hedge delay in milliseconds.
+ */
+public class HedgeStats {
+    private final long requests;
+    private final long hedged;
+    private final long wins;
+    private final long rejected;
+    private final long delay;
+
+    public HedgeStats(long requests, long hedged, long wins, long rejected, long delay) {
+        this.requests = requests;
+        this.hedged = hedged;
+        this.wins = wins;
+        this.rejected = rejected;
+        this.delay = delay;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getHedged() {
+        return hedged;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * @return fraction of the requests that were hedged
+     */
+    public double getHedgeRate() {
+        return requests == 0 ? 0 : (double) hedged / requests;
+    }
+
+    /**
+     * @return fraction of the hedged requests answered first by the hedge
+     */
+    public double getWinRate() {
+        return hedged == 0 ? 0 : (double) wins / hedged;
+    }
+}
@@ -3,10 +3,8 @@ package org.reactome.server.search.domain;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.reactome.server.search.solr.SolrConverter.Field.*;
 
@@ -22,6 +20,11 @@ import static org.reactome.server.search.solr.SolrConverter.Field.*;
 public class Query {
     public enum Scope {REFERENCE_ENTITY, PHYSICAL_ENTITY, BOTH}
 
+    /**
+     * Cursor of the first page when paging with a cursor (see Builder.withCursor)
+     */
+    public static final String FIRST_PAGE = "*";
+
     private String query;
     private String originalQuery;
     private String filterQuery; //fq
@@ -34,6 +37,7 @@ public class Query {
     private Boolean deleted;
     private Integer start;
     private Integer rows;
+    private String cursor; // continuation token, pages with a cursor instead of start when set
     private ParserType parserType; // defType
     private Map<String, String> reportInfo; // extra information for report, useragent, ip, etc
 
@@ -55,6 +59,7 @@ public class Query {
         private Boolean deleted = Boolean.FALSE;
         private Integer start;
         private Integer rows;
+        private String cursor = null;
         private ParserType parserType = ParserType.STD; // defType
         private Map<String, String> reportInfo = null; // extra information for report, useragent, ip, etc
 
@@ -68,6 +73,28 @@ public class Query {
             this.originalQuery = query;
         }
 
+        /**
+         * Copies every parameter of the given query. Filter lists are copied too, so the new query can be
+         * modified (or used concurrently) without affecting the original one.
+         */
+        public Builder(Query query) {
+            this(query.query);
+            keepOriginalQuery(query.originalQuery);
+            addFilterQuery(query.filterQuery);
+            forSpecies(query.species);
+            withTypes(query.types);
+            withKeywords(query.keywords);
+            inCompartments(query.compartments);
+            includeInteractors(query.includeInteractors);
+            withScope(query.scope);
+            withDeleted(query.deleted);
+            start(query.start);
+            numberOfRows(query.rows);
+            withCursor(query.cursor);
+            withReportInfo(query.reportInfo);
+            withParserType(query.parserType);
+        }
+
         public Builder keepOriginalQuery(String originalQuery) {
             this.originalQuery = originalQuery;
             return this;
@@ -123,6 +150,16 @@ public class Query {
             return this;
         }
 
+        /**
+         * Pages with a cursor instead of start: the cost of a page does not depend on how deep it is. Start with
+         * Query.FIRST_PAGE and then pass the nextCursor of the previous result. start is ignored and the result
+         * is never clustered.
+         */
+        public Builder withCursor(String cursor) {
+            this.cursor = cursor;
+            return this;
+        }
+
         public Builder withReportInfo(Map<String, String> reportInfo) {
             if (reportInfo != null) this.reportInfo = new HashMap<>(reportInfo);
             return this;
@@ -147,6 +184,7 @@ public class Query {
             ret.deleted = this.deleted;
             ret.start = this.start;
             ret.rows = this.rows;
+            ret.cursor = this.cursor;
             ret.reportInfo = this.reportInfo;
             ret.parserType = this.parserType;
             return ret;
@@ -167,4 +205,30 @@ public class Query {
     public Boolean isDeleted() {
         return deleted;
     }
+
+    /**
+     * Canonical form of the query, two queries that produce the same Solr request have the same key.
+     * Filter lists are sorted and duplicates or blank values are dropped, originalQuery and reportInfo are ignored.
+     */
+    public String getCanonicalKey() {
+        return String.join("|",
+                String.valueOf(query),
+                String.valueOf(filterQuery),
+                canonical(species),
+                canonical(types),
+                canonical(keywords),
+                canonical(compartments),
+                String.valueOf(includeInteractors),
+                String.valueOf(scope),
+                String.valueOf(deleted),
+                String.valueOf(start),
+                String.valueOf(rows),
+                String.valueOf(cursor),
+                String.valueOf(parserType));
+    }
+
+    private static String canonical(List<String> list) {
+        if (list == null) return "";
+        return list.stream().filter(Objects::nonNull).filter(s -> !s.isEmpty()).distinct().sorted().collect(Collectors.joining(","));
+    }
 }
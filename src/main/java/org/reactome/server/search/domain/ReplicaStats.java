@@ -0,0 +1,53 @@
+package org.reactome.server.search.domain;
+
+/**
+ * Snapshot of one of the Solr replicas (when solr.host lists more than one).
+ * The latency is an exponentially weighted moving average of the successful requests, in milliseconds.
+ */
+public class ReplicaStats {
+    private final String url;
+    private final boolean healthy;
+    private final long requests;
+    private final long errors;
+    private final int inFlight;
+    private final double latency;
+    private final long ejections;
+
+    public ReplicaStats(String url, boolean healthy, long requests, long errors, int inFlight, double latency, long ejections) {
+        this.url = url;
+        this.healthy = healthy;
+        this.requests = requests;
+        this.errors = errors;
+        this.inFlight = inFlight;
+        this.latency = latency;
+        this.ejections = ejections;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public double getLatency() {
+        return latency;
+    }
+
+    public long getEjections() {
+        return ejections;
+    }
+}
@@ -0,0 +1,67 @@
+package org.reactome.server.search.domain;
+
+/**
+ * Counters of the reports sent to the report service
+ */
+public class ReportStats {
+    private final long queued;
+    private final long collapsed;
+    private final long sent;
+    private final long failed;
+    private final long dropped;
+    private final int pending;
+    private final int spooled;
+
+    public ReportStats(long queued, long collapsed, long sent, long failed, long dropped, int pending, int spooled) {
+        this.queued = queued;
+        this.collapsed = collapsed;
+        this.sent = sent;
+        this.failed = failed;
+        this.dropped = dropped;
+        this.pending = pending;
+        this.spooled = spooled;
+    }
+
+    public long getQueued() {
+        return queued;
+    }
+
+    /**
+     * Reports merged into another one of the same request mapping, term and release by the aggregation window
+     */
+    public long getCollapsed() {
+        return collapsed;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * Reports the report service did not accept or could not be delivered
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Reports discarded because the queue (or the spool) was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Reports waiting in the queue to be sent
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Undelivered reports waiting in the spool to be replayed
+     */
+    public int getSpooled() {
+        return spooled;
+    }
+}
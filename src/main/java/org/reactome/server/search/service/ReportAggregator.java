@@ -0,0 +1,100 @@
+package org.reactome.server.search.service;
+
+import org.reactome.server.search.util.ReportEntity;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Collapses the reports of the same (requestMapping, term, release) received during a time window into a single
+ * report carrying the number of occurrences. The ip and agent of the first occurrence are kept.
+ * <p>
+ * Reports are counted in a ConcurrentHashMap, which locks per bin so different terms never contend. Counting and
+ * draining a term are both atomic on its bin, so no occurrence is lost across windows. Optionally, once a term has
+ * been seen sampleAbove times in the window, only 1 in sampleRate occurrences is counted (weighted by sampleRate)
+ * so very hot terms do not contend on the same bin.
+ */
+class ReportAggregator {
+
+    private final long window;
+    private final int sampleAbove;
+    private final int sampleRate;
+
+    private final ConcurrentHashMap<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private final LongAdder collapsed = new LongAdder();
+    private volatile long nextDrain;
+
+    ReportAggregator(long window, int sampleAbove, int sampleRate) {
+        this.window = window;
+        this.sampleAbove = sampleAbove;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.nextDrain = System.currentTimeMillis() + window;
+    }
+
+    void add(ReportDispatcher.Report report) {
+        for (ReportEntity entity : report.entities) {
+            String key = report.requestMapping + "|" + entity.getTerm() + "|" + report.release;
+            int weight = 1;
+            if (sampleRate > 1) {
+                Aggregate current = aggregates.get(key);
+                if (current != null && current.count >= sampleAbove) {
+                    if (ThreadLocalRandom.current().nextInt(sampleRate) != 0) continue;
+                    weight = sampleRate;
+                }
+            }
+            int added = weight;
+            aggregates.compute(key, (k, aggregate) -> {
+                if (aggregate == null) return new Aggregate(report, entity, added);
+                aggregate.count += added;
+                return aggregate;
+            });
+        }
+    }
+
+    /**
+     * @return milliseconds until the current window closes
+     */
+    long remaining() {
+        return nextDrain - System.currentTimeMillis();
+    }
+
+    /**
+     * Closes the window, passing one report per aggregated (requestMapping, term, release) to the given consumer
+     */
+    void drain(Consumer<ReportDispatcher.Report> consumer) {
+        nextDrain = System.currentTimeMillis() + window;
+        for (String key : aggregates.keySet()) {
+            Aggregate aggregate = aggregates.remove(key);
+            if (aggregate == null) continue;
+            ReportDispatcher.Report first = aggregate.first;
+            ReportEntity entity = new ReportEntity(aggregate.entity.getTerm(), aggregate.entity.getResource());
+            if (aggregate.count > 1) entity.setCount(aggregate.count);
+            ReportDispatcher.Report report = new ReportDispatcher.Report(first.requestMapping, first.release, first.ip, first.agent, Collections.singletonList(entity));
+            report.count = aggregate.count;
+            collapsed.add(aggregate.count - 1);
+            consumer.accept(report);
+        }
+    }
+
+    /**
+     * @return the number of reports that have been merged into another one
+     */
+    long getCollapsed() {
+        return collapsed.sum();
+    }
+
+    private static class Aggregate {
+        private final ReportDispatcher.Report first;
+        private final ReportEntity entity;
+        private volatile int count;
+
+        Aggregate(ReportDispatcher.Report first, ReportEntity entity, int count) {
+            this.first = first;
+            this.entity = entity;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package org.reactome.server.search.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.reactome.server.search.domain.Query;
+import org.reactome.server.search.domain.ReportStats;
+import org.reactome.server.search.domain.TargetResult;
+import org.reactome.server.search.util.ReportEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import static org.reactome.server.search.util.ReportInformationEnum.*;
+
+/**
+ * Sends the not found and target reports to the report service without holding up the search.
+ * <p>
+ * Reports are added to a bounded lock-free queue and a single sender thread drains it every report.batch.interval
+ * milliseconds (or as soon as report.batch.size reports are waiting). Target reports sharing the same release, ip
+ * and agent are merged into a single POST. Everything goes through one pooled HttpClient. When the queue is full
+ * the report.dropPolicy decides whether the incoming (NEWEST) or the oldest waiting (OLDEST) report is dropped.
+ * <p>
+ * When report.aggregation.window is set, reports go through a {@link ReportAggregator} first and only one report
+ * per (requestMapping, term, release) and window is queued, carrying the number of occurrences in its count.
+ * <p>
+ * When report.spool.file is set, reports that cannot be delivered (connection errors, timeouts or 5xx responses)
+ * are written to a {@link ReportSpool} instead of being lost. A drainer thread replays the spool with exponential
+ * backoff (report.spool.retry up to report.spool.maxRetry milliseconds) and, until it succeeds, new reports go
+ * straight to the spool without attempting a connection. A report the service keeps failing (5xx or an error
+ * after connecting) goes back to the end of the spool so it does not hold up the others, and it is dropped after
+ * report.spool.maxAttempts attempts. Failing to connect does not count as an attempt.
+ */
+@Component
+class ReportDispatcher implements InitializingBean, DisposableBean {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    private final static ObjectMapper MAPPER = new ObjectMapper();
+
+    static final String TARGETS = "targets";
+    static final String NOT_FOUND = "notfound";
+
+    enum DropPolicy {NEWEST, OLDEST}
+
+    private enum Delivery {SENT, REJECTED, RETRY, UNAVAILABLE}
+
+    private final String reportUser;
+    private final String reportPassword;
+    private final String reportUrl;
+    private final int capacity;
+    private final int batchSize;
+    private final long batchInterval;
+    private final DropPolicy dropPolicy;
+    private final int timeout;
+    private final ReportAggregator aggregator;
+    private final String spoolFile;
+    private final int spoolSize;
+    private final long spoolRetry;
+    private final long spoolMaxRetry;
+    private final int spoolMaxAttempts;
+
+    private final ConcurrentLinkedQueue<Report> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private CloseableHttpClient client;
+    private Thread sender;
+    private volatile boolean running = false;
+    private ReportSpool spool;
+    private Thread drainer;
+    private volatile boolean unavailable = false;
+
+    ReportDispatcher(@Value("${report.user:default}") String reportUser,
+                     @Value("${report.password:default}") String reportPassword,
+                     @Value("${report.url:http://localhost:8080}") String reportUrl,
+                     @Value("${report.queue.capacity:10000}") int capacity,
+                     @Value("${report.batch.size:100}") int batchSize,
+                     @Value("${report.batch.interval:1000}") long batchInterval,
+                     @Value("${report.dropPolicy:NEWEST}") DropPolicy dropPolicy,
+                     @Value("${report.timeout:5000}") int timeout,
+                     @Value("${report.aggregation.window:0}") long aggregationWindow,
+                     @Value("${report.aggregation.sampleAbove:1000}") int sampleAbove,
+                     @Value("${report.aggregation.sampleRate:1}") int sampleRate,
+                     @Value("${report.spool.file:}") String spoolFile,
+                     @Value("${report.spool.size:16777216}") int spoolSize,
+                     @Value("${report.spool.retry:1000}") long spoolRetry,
+                     @Value("${report.spool.maxRetry:60000}") long spoolMaxRetry,
+                     @Value("${report.spool.maxAttempts:10}") int spoolMaxAttempts) {
+        this.reportUser = reportUser;
+        this.reportPassword = reportPassword;
+        this.reportUrl = reportUrl;
+        this.capacity = capacity;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchInterval = batchInterval;
+        this.dropPolicy = dropPolicy;
+        this.timeout = timeout;
+        this.aggregator = aggregationWindow > 0 ? new ReportAggregator(aggregationWindow, sampleAbove, sampleRate) : null;
+        this.spoolFile = spoolFile;
+        this.spoolSize = spoolSize;
+        this.spoolRetry = Math.max(1, spoolRetry);
+        this.spoolMaxRetry = Math.max(this.spoolRetry, spoolMaxRetry);
+        this.spoolMaxAttempts = Math.max(1, spoolMaxAttempts);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(4);
+        connectionManager.setDefaultMaxPerRoute(4);
+        CredentialsProvider provider = new BasicCredentialsProvider();
+        provider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(reportUser, reportPassword));
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultCredentialsProvider(provider)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+
+        running = true;
+        sender = new Thread(this::run, "ReportDispatcherThread");
+        sender.setDaemon(true);
+        sender.start();
+
+        if (spoolFile != null && !spoolFile.isEmpty()) {
+            try {
+                spool = new ReportSpool(Paths.get(spoolFile), spoolSize);
+                if (spool.size() > 0) logger.info(spool.size() + " reports found in the spool " + spoolFile);
+                drainer = new Thread(this::drain, "ReportSpoolDrainerThread");
+                drainer.setDaemon(true);
+                drainer.start();
+            } catch (IOException e) {
+                logger.error("The report spool " + spoolFile + " could not be opened, undelivered reports will be lost", e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        running = false;
+        if (sender != null) {
+            LockSupport.unpark(sender);
+            sender.join(timeout);
+        }
+        if (drainer != null) {
+            LockSupport.unpark(drainer);
+            drainer.join(timeout);
+        }
+        if (spool != null) spool.close();
+        if (client != null) client.close();
+    }
+
+    /**
+     * Queues a report. For target reports one entity per target is sent, otherwise the original query is reported.
+     */
+    void report(String requestMapping, Query queryObject, Set<TargetResult> targetResults) {
+        if (queryObject == null || queryObject.getReportInfo() == null) return;
+        List<ReportEntity> entities;
+        if (targetResults != null && !targetResults.isEmpty()) {
+            entities = targetResults.stream().map(tr -> new ReportEntity(tr.getTerm(), tr.getResource())).collect(Collectors.toList());
+        } else {
+            entities = Collections.singletonList(new ReportEntity(queryObject.getOriginalQuery(), ""));
+        }
+        Map<String, String> info = queryObject.getReportInfo();
+        Report report = new Report(requestMapping, info.get(RELEASEVERSION.getDesc()), info.get(IPADDRESS.getDesc()), info.get(USERAGENT.getDesc()), entities);
+        if (aggregator != null) {
+            aggregator.add(report);
+        } else {
+            offer(report);
+        }
+    }
+
+    ReportStats getStats() {
+        long collapsed = aggregator != null ? aggregator.getCollapsed() : 0;
+        int spooled = spool != null ? spool.size() : 0;
+        return new ReportStats(queued.sum(), collapsed, sent.sum(), failed.sum(), dropped.sum(), size.get(), spooled);
+    }
+
+    private void offer(Report report) {
+        if (size.incrementAndGet() > capacity) {
+            if (dropPolicy == DropPolicy.NEWEST || queue.poll() == null) {
+                size.decrementAndGet();
+                dropped.increment();
+                return;
+            }
+            size.decrementAndGet(); // the oldest one has been removed
+            dropped.increment();
+        }
+        queue.offer(report);
+        queued.increment();
+        if (size.get() >= batchSize) LockSupport.unpark(sender);
+    }
+
+    private long getWait() {
+        return aggregator == null ? batchInterval : Math.max(1, Math.min(batchInterval, aggregator.remaining()));
+    }
+
+    private void run() {
+        while (true) {
+            boolean stopping = !running;
+            if (!stopping && size.get() < batchSize) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(getWait()));
+            if (aggregator != null && (stopping || aggregator.remaining() <= 0)) aggregator.drain(this::offer);
+            List<Report> batch = new ArrayList<>(batchSize);
+            Report report;
+            while (batch.size() < batchSize && (report = queue.poll()) != null) {
+                size.decrementAndGet();
+                batch.add(report);
+            }
+            if (!batch.isEmpty()) {
+                send(batch);
+                if (spool != null) spool.force();
+            }
+            if (stopping && queue.isEmpty()) break; // everything pending has been sent before shutting down
+        }
+    }
+
+    private void send(List<Report> batch) {
+        merge(batch).forEach(this::post);
+    }
+
+    /**
+     * Target reports for the same release, ip and agent are merged into one list, not found reports are sent one
+     * by one as the endpoint takes a single entity.
+     *
+     * @return the not found reports followed by the merged target reports
+     */
+    private static List<Report> merge(List<Report> batch) {
+        List<Report> rtn = new ArrayList<>(batch.size());
+        Map<String, Report> targets = new LinkedHashMap<>();
+        for (Report report : batch) {
+            if (TARGETS.equals(report.requestMapping)) {
+                targets.merge(report.key(), report, Report::merge);
+            } else {
+                rtn.add(report);
+            }
+        }
+        rtn.addAll(targets.values());
+        return rtn;
+    }
+
+    private void post(Report report) {
+        if (spool != null && unavailable) {
+            toSpool(report); // no point in trying until the drainer gets through
+            return;
+        }
+        Delivery delivery = deliver(report);
+        if ((delivery == Delivery.RETRY || delivery == Delivery.UNAVAILABLE) && spool != null) {
+            unavailable = true;
+            toSpool(report);
+            LockSupport.unpark(drainer);
+        } else if (delivery != Delivery.SENT) {
+            failed.add(report.count);
+        }
+    }
+
+    private void toSpool(Report report) {
+        if (!spool.append(report)) {
+            dropped.add(report.count);
+            logger.warn("[REP004] The report spool is full, the report has been dropped");
+        }
+    }
+
+    /**
+     * Replays the spool in batches of up to report.batch.size reports, merged as the queued ones. Once the report
+     * service cannot be reached, the rest of the batch is not tried. When something changed (a report was delivered,
+     * rejected or failed) the batch is removed from the spool and the reports still pending are appended again (so
+     * nothing is sent twice and a failing report does not stay in front of the others). Reports failing for the
+     * report.spool.maxAttempts time are dropped. The drainer waits (doubling the wait up to report.spool.maxRetry)
+     * before trying again unless a report got through.
+     */
+    private void drain() {
+        long wait = spoolRetry;
+        while (running) {
+            List<Report> batch = spool.peek(batchSize);
+            if (batch.isEmpty()) {
+                unavailable = false;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(spoolRetry));
+                continue;
+            }
+            List<Report> pending = new ArrayList<>();
+            boolean reachable = true;
+            boolean changed = false;
+            boolean delivered = false;
+            for (Report report : merge(batch)) {
+                Delivery delivery = reachable ? deliver(report) : Delivery.UNAVAILABLE;
+                switch (delivery) {
+                    case SENT:
+                        delivered = changed = true;
+                        break;
+                    case REJECTED:
+                        failed.add(report.count); // not retried either
+                        changed = true;
+                        break;
+                    case RETRY:
+                        changed = true;
+                        if (++report.attempts < spoolMaxAttempts) {
+                            pending.add(report);
+                        } else {
+                            failed.add(report.count);
+                            logger.warn("[REP005] A report failed {} times and has been dropped from the spool", report.attempts);
+                        }
+                        break;
+                    case UNAVAILABLE:
+                        reachable = false;
+                        pending.add(report);
+                        break;
+                }
+            }
+            if (changed) {
+                pending.forEach(this::toSpool);
+                spool.remove(batch.size());
+                spool.force();
+            }
+            if (!pending.isEmpty()) {
+                unavailable = true;
+            } else if (spool.size() == 0) {
+                unavailable = false;
+            }
+            if (delivered) {
+                wait = spoolRetry;
+            } else {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(wait));
+                wait = Math.min(wait * 2, spoolMaxRetry);
+            }
+        }
+    }
+
+    /**
+     * @return UNAVAILABLE when the report service could not be reached, RETRY when it failed and REJECTED when it
+     * refused the report (or the report cannot be sent at all)
+     */
+    private Delivery deliver(Report report) {
+        String url = reportUrl + "/report/search/" + report.requestMapping;
+        try {
+            URIBuilder uriBuilder = new URIBuilder(url);
+            uriBuilder.addParameter("releaseNumber", report.release);
+            uriBuilder.addParameter("ip", report.ip);
+            uriBuilder.addParameter("agent", report.agent);
+
+            HttpPost httpPost = new HttpPost(uriBuilder.build());
+            httpPost.setHeader("Accept", "application/json");
+            Object body = TARGETS.equals(report.requestMapping) ? report.entities : report.entities.get(0);
+            httpPost.setEntity(new StringEntity(MAPPER.writeValueAsString(body), ContentType.APPLICATION_JSON));
+
+            try (CloseableHttpResponse response = client.execute(httpPost)) {
+                EntityUtils.consumeQuietly(response.getEntity()); // so the connection goes back to the pool
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode == 200) {
+                    sent.add(report.count);
+                    return Delivery.SENT;
+                }
+                logger.error("[REP001] The url {} returned the code {} and the report hasn't been created.", url, statusCode);
+                return statusCode >= 500 ? Delivery.RETRY : Delivery.REJECTED;
+            }
+        } catch (ConnectException e) {
+            logger.error("[REP002] Report service is unavailable");
+            return Delivery.UNAVAILABLE;
+        } catch (JsonProcessingException e) {
+            logger.error("[REP003] The report could not be serialised : ", e);
+            return Delivery.REJECTED;
+        } catch (IOException e) {
+            logger.error("[REP003] An unexpected error has occurred when saving a report : ", e);
+            return Delivery.RETRY;
+        } catch (URISyntaxException e) {
+            logger.error("[REP003] An unexpected error has occurred when saving a report : ", e);
+            return Delivery.REJECTED;
+        }
+    }
+
+    static class Report {
+        final String requestMapping;
+        final String release;
+        final String ip;
+        final String agent;
+        final List<ReportEntity> entities;
+        int count = 1; // number of searches this report stands for
+        int attempts = 0; // failed deliveries from the spool
+
+        Report(String requestMapping, String release, String ip, String agent, List<ReportEntity> entities) {
+            this.requestMapping = requestMapping;
+            this.release = release;
+            this.ip = ip;
+            this.agent = agent;
+            this.entities = entities;
+        }
+
+        String key() {
+            return requestMapping + "|" + release + "|" + ip + "|" + agent;
+        }
+
+        Report merge(Report other) {
+            List<ReportEntity> entities = new ArrayList<>(this.entities);
+            entities.addAll(other.entities);
+            Report rtn = new Report(requestMapping, release, ip, agent, entities);
+            rtn.count = this.count + other.count;
+            rtn.attempts = Math.max(this.attempts, other.attempts);
+            return rtn;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.reactome.server.search.service;
+
+import org.reactome.server.search.util.ReportEntity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only spool of the reports that could not be delivered, kept in a memory-mapped file so they survive
+ * restarts (the page cache is flushed to disk with force).
+ * <p>
+ * The file starts with a header (magic, read position, write position and number of records) followed by the
+ * records, each one prefixed with its length. Records are consumed in order from the read position and, once the
+ * spool is empty, both positions go back to the start of the file. When a record does not fit at the end, the
+ * records still pending are moved back to the start of the file (reclaiming the consumed space) and it is only
+ * rejected if it does not fit then either.
+ */
+class ReportSpool implements Closeable {
+
+    private final static int MAGIC = 0x52505331;
+    private final static int HEADER = 16;
+    private final static int NULL = -1;
+    private final static int COMPACTION_CHUNK = 64 * 1024;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer cursor;
+    private int readPosition;
+    private int writePosition;
+    private int records;
+    private boolean dirty = false;
+
+    ReportSpool(Path file, int size) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, HEADER + 64));
+        cursor = buffer.duplicate();
+        readPosition = buffer.getInt(4);
+        writePosition = buffer.getInt(8);
+        records = buffer.getInt(12);
+        boolean valid = buffer.getInt(0) == MAGIC && HEADER <= readPosition && readPosition <= writePosition && writePosition <= buffer.capacity();
+        if (!valid) {
+            buffer.putInt(0, MAGIC);
+            reset();
+        }
+    }
+
+    /**
+     * @return false if there is no room left for the report
+     */
+    synchronized boolean append(ReportDispatcher.Report report) {
+        byte[] requestMapping = bytes(report.requestMapping);
+        byte[] release = bytes(report.release);
+        byte[] ip = bytes(report.ip);
+        byte[] agent = bytes(report.agent);
+        List<byte[]> entities = new ArrayList<>(report.entities.size() * 2);
+        int length = size(requestMapping) + size(release) + size(ip) + size(agent) + 12;
+        for (ReportEntity entity : report.entities) {
+            byte[] term = bytes(entity.getTerm());
+            byte[] resource = bytes(entity.getResource());
+            entities.add(term);
+            entities.add(resource);
+            length += size(term) + size(resource) + 4;
+        }
+        if (writePosition + 4 + length > buffer.capacity()) {
+            if (readPosition == HEADER || writePosition - readPosition + 4 + length > buffer.capacity() - HEADER) return false;
+            compact();
+        }
+
+        cursor.position(writePosition);
+        cursor.putInt(length);
+        put(requestMapping);
+        put(release);
+        put(ip);
+        put(agent);
+        cursor.putInt(report.count);
+        cursor.putInt(report.attempts);
+        cursor.putInt(report.entities.size());
+        for (int i = 0; i < report.entities.size(); i++) {
+            put(entities.get(2 * i));
+            put(entities.get(2 * i + 1));
+            Integer count = report.entities.get(i).getCount();
+            cursor.putInt(count == null ? NULL : count);
+        }
+        writePosition = cursor.position();
+        records++;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * @return the oldest report in the spool or null if it is empty
+     */
+    synchronized ReportDispatcher.Report peek() {
+        List<ReportDispatcher.Report> rtn = peek(1);
+        return rtn.isEmpty() ? null : rtn.get(0);
+    }
+
+    /**
+     * @param max maximum number of reports
+     * @return the oldest reports in the spool (up to max), in order
+     */
+    synchronized List<ReportDispatcher.Report> peek(int max) {
+        List<ReportDispatcher.Report> rtn = new ArrayList<>(Math.min(max, records));
+        int position = readPosition;
+        for (int i = 0; i < records && i < max; i++) {
+            rtn.add(read(position));
+            position += 4 + buffer.getInt(position);
+        }
+        return rtn;
+    }
+
+    /**
+     * Removes the oldest report (the one returned by peek)
+     */
+    synchronized void remove() {
+        remove(1);
+    }
+
+    /**
+     * Removes the oldest reports (the ones returned by peek)
+     *
+     * @param count number of reports to remove
+     */
+    synchronized void remove(int count) {
+        for (int i = 0; i < count && records > 0; i++) {
+            readPosition += 4 + buffer.getInt(readPosition);
+            records--;
+        }
+        if (records == 0) {
+            reset();
+        } else {
+            writeHeader();
+        }
+    }
+
+    synchronized int size() {
+        return records;
+    }
+
+    /**
+     * Writes the changes to disk
+     */
+    synchronized void force() {
+        if (!dirty) return;
+        buffer.force();
+        dirty = false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private ReportDispatcher.Report read(int position) {
+        cursor.position(position + 4);
+        String requestMapping = string();
+        String release = string();
+        String ip = string();
+        String agent = string();
+        int count = cursor.getInt();
+        int attempts = cursor.getInt();
+        int size = cursor.getInt();
+        List<ReportEntity> entities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ReportEntity entity = new ReportEntity(string(), string());
+            int entityCount = cursor.getInt();
+            if (entityCount != NULL) entity.setCount(entityCount);
+            entities.add(entity);
+        }
+        ReportDispatcher.Report report = new ReportDispatcher.Report(requestMapping, release, ip, agent, entities);
+        report.count = count;
+        report.attempts = attempts;
+        return report;
+    }
+
+    /**
+     * Moves the pending records to the start of the file. The copy goes forwards in chunks, so it never overwrites
+     * what is still to be copied, and the header is written (and forced) once the records are in place.
+     */
+    private void compact() {
+        int length = writePosition - readPosition;
+        byte[] chunk = new byte[Math.min(length, COMPACTION_CHUNK)];
+        ByteBuffer source = buffer.duplicate();
+        cursor.position(HEADER);
+        for (int copied = 0; copied < length; copied += chunk.length) {
+            int size = Math.min(chunk.length, length - copied);
+            source.position(readPosition + copied);
+            source.get(chunk, 0, size);
+            cursor.put(chunk, 0, size);
+        }
+        readPosition = HEADER;
+        writePosition = HEADER + length;
+        writeHeader();
+        force();
+    }
+
+    private void reset() {
+        readPosition = HEADER;
+        writePosition = HEADER;
+        records = 0;
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(4, readPosition);
+        buffer.putInt(8, writePosition);
+        buffer.putInt(12, records);
+        dirty = true;
+    }
+
+    private void put(byte[] value) {
+        if (value == null) {
+            cursor.putInt(NULL);
+        } else {
+            cursor.putInt(value.length);
+            cursor.put(value);
+        }
+    }
+
+    private String string() {
+        int length = cursor.getInt();
+        if (length == NULL) return null;
+        byte[] value = new byte[length];
+        cursor.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int size(byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+}
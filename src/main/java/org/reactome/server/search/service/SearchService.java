@@ -1,22 +1,9 @@
 package org.reactome.server.search.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.http.NameValuePair;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicNameValuePair;
 import org.reactome.server.search.domain.*;
 import org.reactome.server.search.exception.SolrSearcherException;
 import org.reactome.server.search.solr.SolrConverter;
-import org.reactome.server.search.util.ReportEntity;
+import org.reactome.server.search.util.SearchExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,14 +12,13 @@ import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.io.StringWriter;
-import java.net.ConnectException;
-import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-
-import static org.reactome.server.search.util.ReportInformationEnum.*;
+import java.util.stream.Stream;
 
 /**
  * Search Service acts as api between the Controller and Solr / Database
@@ -47,18 +33,27 @@ public class SearchService {
     private final static Logger logger = LoggerFactory.getLogger("");
 
     private final SolrConverter solrConverter;
+    private final SearchExecutor executor;
+    private final ReportDispatcher reportDispatcher;
+
+    @Value("${search.speculative:false}")
+    private boolean speculative;
 
-    @Value("${report.user:default}")
-    private String reportUser;
+    @Value("${search.combined:false}")
+    private boolean combined;
 
-    @Value("${report.password:default}")
-    private String reportPassword;
+    @Value("${search.diagram.summary.facets:false}")
+    private boolean diagramSummaryFacets;
 
-    @Value("${report.url:http://localhost:8080}")
-    private String reportUrl;
+    @Value("${search.stream.rows:1000}")
+    private int streamRows;
 
-    public SearchService(@Autowired SolrConverter solrConverter) {
+    public SearchService(@Autowired SolrConverter solrConverter,
+                         @Autowired SearchExecutor executor,
+                         @Autowired ReportDispatcher reportDispatcher) {
         this.solrConverter = solrConverter;
+        this.executor = executor;
+        this.reportDispatcher = reportDispatcher;
     }
 
     /**
@@ -70,6 +65,69 @@ public class SearchService {
         return solrConverter.ping();
     }
 
+    /**
+     * Leased, pending and available connections of the Solr client pool, useful to size solr.pool.*
+     *
+     * @return ConnectionPoolStats
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return solrConverter.getConnectionPoolStats();
+    }
+
+    /**
+     * Requests, errors, latency and health of each Solr replica, useful to check the balancing of solr.replicas.*
+     *
+     * @return ReplicaStats of each replica, empty when solr.host is a single URL
+     */
+    public List<ReplicaStats> getReplicaStats() {
+        return solrConverter.getReplicaStats();
+    }
+
+    /**
+     * Hedge rate and wins of the queries sent to a second Solr replica when the first is slow (solr.hedge.*)
+     *
+     * @return HedgeStats, null when hedging is disabled or solr.host is a single URL
+     */
+    public HedgeStats getHedgeStats() {
+        return solrConverter.getHedgeStats();
+    }
+
+    /**
+     * Concurrent requests and rejections of the bulkheads limiting each group of Solr handlers (solr.bulkhead.*)
+     *
+     * @return BulkheadStats of suggest, search, facet, flagging and batch, empty when the bulkheads are disabled
+     */
+    public List<BulkheadStats> getBulkheadStats() {
+        return solrConverter.getBulkheadStats();
+    }
+
+    /**
+     * State, transitions and fail fast rejections of the circuit breaker in front of Solr (solr.breaker.*)
+     *
+     * @return CircuitBreakerStats, null when the circuit breaker is disabled
+     */
+    public CircuitBreakerStats getCircuitBreakerStats() {
+        return solrConverter.getCircuitBreakerStats();
+    }
+
+    /**
+     * Hit, miss and eviction counters of the search result cache (enabled with search.cache.enabled)
+     *
+     * @return CacheStats
+     */
+    public CacheStats getCacheStats() {
+        return solrConverter.getCacheStats();
+    }
+
+    /**
+     * Queued, sent, failed and dropped counters of the not found and target reports
+     *
+     * @return ReportStats
+     */
+    public ReportStats getReportStats() {
+        return reportDispatcher.getStats();
+    }
+
     /**
      * This method is a simple aggregation of service methods used in the Content project
      *
@@ -83,6 +141,10 @@ public class SearchService {
         return this.getSearchResult(query, rowCount, page, grouped, false);
     }
 
+    public CompletableFuture<SearchResult> getSearchResultAsync(Query query, int rowCount, int page, boolean grouped) {
+        return executor.supply(() -> getSearchResult(query, rowCount, page, grouped));
+    }
+
     /**
      * This method is a simple aggregation of service methods used in the Content project
      *
@@ -95,7 +157,14 @@ public class SearchService {
      */
     public SearchResult getSearchResult(Query query, int rowCount, int page, boolean grouped, boolean forceFilters) throws SolrSearcherException {
         query.setDeleted(false);
-        FacetMapping facetMapping = getFacetingInformation(query, forceFilters);
+        if (speculative) return getSpeculativeSearchResult(query, rowCount, page, grouped, forceFilters);
+        FacetMapping facetMapping = null;
+        if (combined) {
+            SearchResult searchResult = getCombinedSearchResult(query, rowCount, page, grouped, forceFilters);
+            if (searchResult != null && searchResult.getFacetMapping().getTotalNumFount() > 0) return searchResult;
+            if (searchResult != null) facetMapping = searchResult.getFacetMapping();
+        }
+        if (facetMapping == null) facetMapping = getFacetingInformation(query, forceFilters);
         if (facetMapping == null || facetMapping.getTotalNumFount() < 1) {
             query = new Query.Builder(query.getQuery()).keepOriginalQuery(query.getOriginalQuery()).withReportInfo(query.getReportInfo()).withDeleted(false).build();
             facetMapping = getFacetingInformation(query, forceFilters);
@@ -114,44 +183,179 @@ public class SearchService {
             facetMapping = getFacetingInformation(query, forceFilters);
         }
         if (facetMapping != null && facetMapping.getTotalNumFount() > 0) {
-            setPagingParameters(query, facetMapping, rowCount, page, grouped);
-            GroupedResult groupedResult = getEntries(query, grouped);
-            return new SearchResult(facetMapping, groupedResult, getHighestResultCount(groupedResult), query.getRows());
+            return buildSearchResult(query, facetMapping, rowCount, page, grouped);
         }
 
         // No results found, check for targets and incorporate them in the SearchResult if present.
-        Set<TargetResult> targets = getTargets(query);
-        doAsyncReport(query, targets);
+        return buildTargetsResult(query, getTargets(query));
+    }
+
+    public CompletableFuture<SearchResult> getSearchResultAsync(Query query, int rowCount, int page, boolean grouped, boolean forceFilters) {
+        return executor.supply(() -> getSearchResult(query, rowCount, page, grouped, forceFilters));
+    }
+
+    /**
+     * Speculative version of the fallback cascade in getSearchResult. All the fallback variants of the query and the
+     * target core lookup are fired at the same time, the first stage (in priority order) with hits is taken and the
+     * rest are cancelled. For queries without results this costs roughly one Solr round trip instead of six.
+     * It takes precedence over search.combined: the facets and the entries are always retrieved separately.
+     */
+    private SearchResult getSpeculativeSearchResult(Query query, int rowCount, int page, boolean grouped, boolean forceFilters) throws SolrSearcherException {
+        List<Query> stages = getFallbackStages(query);
+        Query lastStage = stages.get(stages.size() - 1);
+
+        List<Future<FacetMapping>> facets = new ArrayList<>();
+        for (Query stage : stages) {
+            facets.add(executor.submit(() -> getFacetingInformation(stage, forceFilters)));
+        }
+        Future<Set<TargetResult>> targets = executor.submit(() -> getTargets(lastStage));
+
+        try {
+            for (int i = 0; i < stages.size(); i++) {
+                FacetMapping facetMapping = await(facets.get(i));
+                if (facetMapping == null) break; // Same as the sequential cascade, no other stage will succeed
+                if (facetMapping.getTotalNumFount() > 0) {
+                    cancel(facets);
+                    targets.cancel(true);
+                    return buildSearchResult(stages.get(i), facetMapping, rowCount, page, grouped);
+                }
+            }
+            cancel(facets);
+            return buildTargetsResult(lastStage, await(targets));
+        } catch (SolrSearcherException e) {
+            cancel(facets);
+            targets.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * The fallback stages in the order they are tried: the query as it is, without filters, deleted entries,
+     * DISMAX parser and, lastly, DISMAX over both reference and physical entities
+     */
+    private List<Query> getFallbackStages(Query query) {
+        List<Query> stages = new ArrayList<>();
+        stages.add(query);
+        stages.add(getUnfilteredQuery(query).build());
+        stages.add(getUnfilteredQuery(query).withDeleted(true).build());
+        stages.add(getUnfilteredQuery(query).withParserType(ParserType.DISMAX).build());
+        stages.add(getUnfilteredQuery(query).withParserType(ParserType.DISMAX).withScope(Query.Scope.BOTH).build());
+        return stages;
+    }
+
+    private Query.Builder getUnfilteredQuery(Query query) {
+        return new Query.Builder(query.getQuery()).keepOriginalQuery(query.getOriginalQuery()).withReportInfo(query.getReportInfo()).withDeleted(false);
+    }
+
+    /**
+     * First stage of getSearchResult with the facets and the entries from a single request. It is only possible
+     * when the paging does not depend on the type facet and the selected facets do not need to be corrected.
+     * Cursor queries are left to getEntries, which pages them ungrouped and returns the following cursor.
+     *
+     * @return the SearchResult (its FacetMapping when there are no hits) or null when the facets are needed first
+     */
+    private SearchResult getCombinedSearchResult(Query query, int rowCount, int page, boolean grouped, boolean forceFilters) throws SolrSearcherException {
+        if (query.getQuery() == null || query.getQuery().isEmpty() || query.getCursor() != null) return null;
+        boolean paged = query.getStart() == null || query.getRows() == null;
+        if (!setPagingParameters(query, rowCount, page, grouped)) return null;
+        SearchResult searchResult = solrConverter.getFacetedEntries(query, grouped);
+        FacetMapping facetMapping = searchResult.getFacetMapping();
+        if (!forceFilters && !isSelectionFound(query, facetMapping)) {
+            // The filters are corrected by getFacetingInformation, which sets the paging for them afterwards
+            if (paged) {
+                query.setStart(null);
+                query.setRows(null);
+            }
+            return null;
+        }
+        if (facetMapping.getTotalNumFount() < 1) return searchResult;
+        GroupedResult groupedResult = searchResult.getGroupedResult();
+        addTargets(query, groupedResult);
+        return new SearchResult(facetMapping, groupedResult, getHighestResultCount(groupedResult), query.getRows());
+    }
+
+    /**
+     * @return true if every selected facet of the query is in the FacetMapping
+     */
+    private boolean isSelectionFound(Query query, FacetMapping facetMapping) {
+        return isSelectionFound(query.getSpecies(), facetMapping.getSpeciesFacet())
+                && isSelectionFound(query.getTypes(), facetMapping.getTypeFacet())
+                && isSelectionFound(query.getKeywords(), facetMapping.getKeywordFacet())
+                && isSelectionFound(query.getCompartments(), facetMapping.getCompartmentFacet());
+    }
+
+    private boolean isSelectionFound(List<String> selected, FacetList facetList) {
+        if (selected == null || selected.isEmpty()) return true;
+        return facetList != null && facetList.getSelected() != null && facetList.getSelected().size() == selected.size();
+    }
+
+    private SearchResult buildSearchResult(Query query, FacetMapping facetMapping, int rowCount, int page, boolean grouped) throws SolrSearcherException {
+        setPagingParameters(query, facetMapping, rowCount, page, grouped);
+        GroupedResult groupedResult = getEntries(query, grouped);
+        return new SearchResult(facetMapping, groupedResult, getHighestResultCount(groupedResult), query.getRows());
+    }
 
+    private SearchResult buildTargetsResult(Query query, Set<TargetResult> targets) {
+        doAsyncReport(query, targets);
         return targets.isEmpty() ? null : new SearchResult(targets);
     }
 
+    private <T> T await(Future<T> future) throws SolrSearcherException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrSearcherException("Interrupted while waiting for a speculative search", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolrSearcherException) throw (SolrSearcherException) e.getCause();
+            throw new SolrSearcherException("Speculative search failed", e.getCause());
+        }
+    }
+
+    private void cancel(List<? extends Future<?>> futures) {
+        futures.forEach(future -> future.cancel(true));
+    }
+
     /**
      * This Method gets multiple entries for a specific query while considering the filter information
      * the entries will be returned grouped into types and sorted by relevance (depending on the chosen solr properties)
      *
-     * @param queryObject QueryObject (query, species, types, keywords, compartments, start, rows)
-     *                    start specifies the starting point (offset) and rows the amount of entries returned in total
+     * @param queryObject QueryObject (query, species, types, keywords, compartments, start, rows, cursor)
+     *                    start specifies the starting point (offset) and rows the amount of entries returned in total.
+     *                    When a cursor is set, it is used instead of start and the result is not grouped (Solr
+     *                    cannot group with cursors), the cursor of the following page is in GroupedResult.nextCursor
      * @return GroupedResult
      */
     public GroupedResult getEntries(Query queryObject, Boolean grouped) throws SolrSearcherException {
         grouped = grouped == null ? true : grouped;
+        grouped = grouped && queryObject.getCursor() == null;
         GroupedResult ret = grouped ? solrConverter.getGroupedEntries(queryObject) : solrConverter.getEntries(queryObject);
+        addTargets(queryObject, ret);
+        return ret;
+    }
 
-        if (ret != null && ret.getRowCount() == 0) {
+    /**
+     * Targets are added to (and reported for) results without entries
+     */
+    private void addTargets(Query queryObject, GroupedResult groupedResult) throws SolrSearcherException {
+        if (groupedResult != null && groupedResult.getRowCount() == 0) {
             Set<TargetResult> targetResults = solrConverter.getTargets(queryObject);
             if (!targetResults.isEmpty()) {
-                ret.setTargetResults(targetResults);
+                groupedResult.setTargetResults(targetResults);
             }
             doAsyncReport(queryObject, targetResults);
         }
-        return ret;
+    }
+
+    public CompletableFuture<GroupedResult> getEntriesAsync(Query queryObject, Boolean grouped) {
+        return executor.supply(() -> getEntries(queryObject, grouped));
     }
 
     /**
      * Gets Faceting information for a specific query + filters.
      * This Method will query solr once again if the number of selected filters and found facets differ
-     * (this will help preventing false faceting information when filter are contradictory to each other)
+     * (this will help preventing false faceting information when filter are contradictory to each other),
+     * unless the faceting already corrects them in the same request (search.facets.json)
      *
      * @param queryObject  query and filter (species types keywords compartments)
      * @param forceFilters Avoid removing of filters when they yield to no results
@@ -160,7 +364,7 @@ public class SearchService {
     public FacetMapping getFacetingInformation(Query queryObject, boolean forceFilters) throws SolrSearcherException {
         if (queryObject != null && queryObject.getQuery() != null && !queryObject.getQuery().isEmpty()) {
 
-            FacetMapping facetMapping = solrConverter.getFacetingInformation(queryObject);
+            FacetMapping facetMapping = solrConverter.getFacetingInformation(queryObject, !forceFilters);
             if (forceFilters) return facetMapping;
             boolean correctFacets = true;
             // Each faceting group(species,types,keywords,compartments) is dependent from all selected filters of other faceting groups
@@ -198,7 +402,7 @@ public class SearchService {
                 }
                 queryObject.setCompartments(compartments);
             }
-            if (correctFacets) {
+            if (correctFacets || solrConverter.isCorrectingFacets()) {
                 return facetMapping;
             } else {
                 return solrConverter.getFacetingInformation(queryObject);
@@ -207,6 +411,10 @@ public class SearchService {
         return null;
     }
 
+    public CompletableFuture<FacetMapping> getFacetingInformationAsync(Query queryObject, boolean forceFilters) {
+        return executor.supply(() -> getFacetingInformation(queryObject, forceFilters));
+    }
+
     /**
      * Method for providing Faceting information for Species,Types,Keywords and Compartments
      *
@@ -216,6 +424,10 @@ public class SearchService {
         return solrConverter.getFacetingInformation();
     }
 
+    public CompletableFuture<FacetMapping> getTotalFacetingInformationAsync() {
+        return executor.supply(this::getTotalFacetingInformation);
+    }
+
     /**
      * Method for providing autocomplete suggestions
      *
@@ -229,6 +441,10 @@ public class SearchService {
         return null;
     }
 
+    public CompletableFuture<List<String>> getAutocompleteSuggestionsAsync(String query) {
+        return executor.supply(() -> getAutocompleteSuggestions(query));
+    }
+
     /**
      * Method for supplying spellcheck suggestions
      *
@@ -242,6 +458,10 @@ public class SearchService {
         return null;
     }
 
+    public CompletableFuture<List<String>> getSpellcheckSuggestionsAsync(String query) {
+        return executor.supply(() -> getSpellcheckSuggestions(query));
+    }
+
     /**
      * This Method is used for providing results for the SearchOnFire feature in the PathwaysOverview
      *
@@ -267,6 +487,10 @@ public class SearchService {
         return ret;
     }
 
+    public CompletableFuture<FireworksResult> getFireworksAsync(Query queryObject) {
+        return executor.supply(() -> getFireworks(queryObject));
+    }
+
     /**
      * Getting diagram occurrences, diagrams and subpathways multivalue fields have been added to the document.
      * Diagrams hold where the entity is present.
@@ -285,6 +509,10 @@ public class SearchService {
         return result;
     }
 
+    public CompletableFuture<DiagramResult> getDiagramsAsync(Query queryObject) {
+        return executor.supply(() -> getDiagrams(queryObject));
+    }
+
     /**
      * This is stored in the occurrences multivalue field having diagram:isInDiagram:[list of subpathways occurrences]
      *
@@ -299,6 +527,10 @@ public class SearchService {
         return result;
     }
 
+    public CompletableFuture<DiagramOccurrencesResult> getDiagramOccurrencesResultAsync(Query queryObject) {
+        return executor.supply(() -> getDiagramOccurrencesResult(queryObject));
+    }
+
     /**
      * This is stored in the occurrences multivalue field having diagram:isInDiagram:[list of subpathways occurrences]
      *
@@ -309,6 +541,10 @@ public class SearchService {
         return solrConverter.getDiagramFlagging(queryObject);
     }
 
+    public CompletableFuture<List<DiagramOccurrencesResult>> getDiagramFlaggingAsync(Query queryObject) {
+        return executor.supply(() -> getDiagramFlagging(queryObject));
+    }
+
     /**
      * Return a list of StableIds to be flagged in the Fireworks and the diagram that it might interacts with
      */
@@ -317,25 +553,67 @@ public class SearchService {
         return solrConverter.fireworksFlagging(queryObject);
     }
 
+    public CompletableFuture<FireworksOccurrencesResult> fireworksFlaggingAsync(Query queryObject) {
+        return executor.supply(() -> fireworksFlagging(queryObject));
+    }
+
     /**
      * Retrieve a summary of results in the given Diagram (in query) and in other diagrams.
      * Facets are provided too.
      */
     public DiagramSearchSummary getDiagramSearchSummary(Query queryObject) throws SolrSearcherException {
+        prepareDiagramSearchSummary(queryObject);
+        if (diagramSummaryFacets) return solrConverter.getDiagramSearchSummary(queryObject);
+
+        // The diagrams and fireworks counts are retrieved concurrently and, when speculative, also without scope
+        Query both = new Query.Builder(queryObject).withScope(Query.Scope.BOTH).build();
+        Future<DiagramResult> diagrams = executor.submit(() -> solrConverter.getDiagrams(new Query.Builder(queryObject).build()));
+        Future<FireworksResult> fireworks = executor.submit(() -> solrConverter.getFireworksResult(new Query.Builder(queryObject).build()));
+        List<Future<?>> bothScopes = new ArrayList<>();
+        Future<DiagramResult> bothDiagrams = null;
+        Future<FireworksResult> bothFireworks = null;
+        if (speculative && queryObject.getScope() != Query.Scope.BOTH) {
+            bothScopes.add(bothDiagrams = executor.submit(() -> solrConverter.getDiagrams(new Query.Builder(both).build())));
+            bothScopes.add(bothFireworks = executor.submit(() -> solrConverter.getFireworksResult(new Query.Builder(both).build())));
+        }
+        try {
+            FireworksResult fireworksResult = await(fireworks);
+            if (fireworksResult != null && fireworksResult.getFound() > 0) {
+                cancel(bothScopes);
+                return new DiagramSearchSummary(await(diagrams), fireworksResult);
+            }
+            diagrams.cancel(true);
+            queryObject.setScope(Query.Scope.BOTH);
+            if (bothDiagrams == null) {
+                bothDiagrams = executor.submit(() -> solrConverter.getDiagrams(new Query.Builder(both).build()));
+                bothFireworks = executor.submit(() -> solrConverter.getFireworksResult(new Query.Builder(both).build()));
+                bothScopes.add(bothDiagrams);
+                bothScopes.add(bothFireworks);
+            }
+            return new DiagramSearchSummary(await(bothDiagrams), await(bothFireworks));
+        } catch (SolrSearcherException e) {
+            diagrams.cancel(true);
+            fireworks.cancel(true);
+            cancel(bothScopes);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as getDiagramSearchSummary (honouring the same settings), cancelling the returned future cancels every
+     * request it started
+     */
+    public CompletableFuture<DiagramSearchSummary> getDiagramSearchSummaryAsync(Query queryObject) {
+        return executor.supply(() -> getDiagramSearchSummary(queryObject));
+    }
+
+    private void prepareDiagramSearchSummary(Query queryObject) {
         // Don't get any entry. We only need to count.
         queryObject.setStart(0);
         queryObject.setRows(0);
         if (queryObject.getSpecies() != null) {
             queryObject.getSpecies().add("Entries without species");
         }
-        DiagramResult diagrams = solrConverter.getDiagrams(queryObject);
-        FireworksResult fireworks = solrConverter.getFireworksResult(queryObject);
-        if (fireworks == null || fireworks.getFound() == 0) {
-            queryObject.setScope(Query.Scope.BOTH);
-            diagrams = solrConverter.getDiagrams(queryObject);
-            fireworks = solrConverter.getFireworksResult(queryObject);
-        }
-        return new DiagramSearchSummary(diagrams, fireworks);
     }
 
     @NonNull
@@ -343,26 +621,66 @@ public class SearchService {
         return solrConverter.getContainingPathwaysOf(dbId, includeInteractors, directlyInDiagram, species, fields);
     }
 
+    @NonNull
+    public CompletableFuture<List<Entry>> getContainingPathwaysOfAsync(Long dbId, Boolean includeInteractors, Boolean directlyInDiagram, @Nullable String species, @Nullable List<SolrConverter.Field> fields) {
+        return executor.supply(() -> getContainingPathwaysOf(dbId, includeInteractors, directlyInDiagram, species, fields));
+    }
+
     @NonNull
     public List<Entry> getPhysicalEntitiesOfReference(String stId, @Nullable List<SolrConverter.Field> fields) throws SolrSearcherException {
         return solrConverter.getPhysicalEntitiesOfReference(stId, fields);
     }
 
+    @NonNull
+    public CompletableFuture<List<Entry>> getPhysicalEntitiesOfReferenceAsync(String stId, @Nullable List<SolrConverter.Field> fields) {
+        return executor.supply(() -> getPhysicalEntitiesOfReference(stId, fields));
+    }
+
     @NonNull
     public List<Entry> batchRetrieveFromStIds(List<String> stIds, @Nullable List<SolrConverter.Field> fields) throws SolrSearcherException {
         return solrConverter.batchRetrieveFromStIds(stIds, fields);
     }
 
+    @NonNull
+    public CompletableFuture<List<Entry>> batchRetrieveFromStIdsAsync(List<String> stIds, @Nullable List<SolrConverter.Field> fields) {
+        return executor.supply(() -> batchRetrieveFromStIds(stIds, fields));
+    }
+
+    /**
+     * Long lists are retrieved in chunks (search.batch.chunkSize) with up to search.batch.concurrency requests in
+     * parallel. Entries are passed to the consumer, in the order of stIds, as soon as their chunk is in.
+     */
+    public void batchRetrieveFromStIds(List<String> stIds, @Nullable List<SolrConverter.Field> fields, Consumer<Entry> consumer) throws SolrSearcherException {
+        solrConverter.batchRetrieveFromStIds(stIds, fields, consumer);
+    }
+
     @NonNull
     public List<Entry> batchRetrieveFromDbIds(List<Long> dbIds, @Nullable List<SolrConverter.Field> fields) throws SolrSearcherException {
         return solrConverter.batchRetrieveFromDbIds(dbIds, fields);
     }
 
+    @NonNull
+    public CompletableFuture<List<Entry>> batchRetrieveFromDbIdsAsync(List<Long> dbIds, @Nullable List<SolrConverter.Field> fields) {
+        return executor.supply(() -> batchRetrieveFromDbIds(dbIds, fields));
+    }
+
+    /**
+     * Long lists are retrieved in chunks (search.batch.chunkSize) with up to search.batch.concurrency requests in
+     * parallel. Entries are passed to the consumer, in the order of dbIds, as soon as their chunk is in.
+     */
+    public void batchRetrieveFromDbIds(List<Long> dbIds, @Nullable List<SolrConverter.Field> fields, Consumer<Entry> consumer) throws SolrSearcherException {
+        solrConverter.batchRetrieveFromDbIds(dbIds, fields, consumer);
+    }
+
     @Nullable
     public Entry retrieveFromDbId(Long dbId, @Nullable List<SolrConverter.Field> fields) throws SolrSearcherException {
         return solrConverter.retrieveFromDbId(dbId, fields);
     }
 
+    public CompletableFuture<Entry> retrieveFromDbIdAsync(Long dbId, @Nullable List<SolrConverter.Field> fields) {
+        return executor.supply(() -> retrieveFromDbId(dbId, fields));
+    }
+
     /**
      * @return FacetMapping
      */
@@ -370,16 +688,28 @@ public class SearchService {
         return solrConverter.getIconFacetingInformation();
     }
 
+    public CompletableFuture<FacetMapping> getIconFacetingInformationAsync() {
+        return executor.supply(this::getIconFacetingInformation);
+    }
+
     public Result getIconsResult(Query query, int rows, int page) throws SolrSearcherException {
         query.setStart(rows * (page - 1));
         query.setRows(rows);
         return solrConverter.getIconsResult(query);
     }
 
+    public CompletableFuture<Result> getIconsResultAsync(Query query, int rows, int page) {
+        return executor.supply(() -> getIconsResult(query, rows, page));
+    }
+
     public Entry getIcon(Query query) throws SolrSearcherException {
         return solrConverter.getIcon(query);
     }
 
+    public CompletableFuture<Entry> getIconAsync(Query query) {
+        return executor.supply(() -> getIcon(query));
+    }
+
     /**
      * Return a list of Proteins that are in our scope for curation
      */
@@ -387,6 +717,26 @@ public class SearchService {
         return solrConverter.getTargets(queryObject);
     }
 
+    public CompletableFuture<Set<TargetResult>> getTargetsAsync(Query queryObject) {
+        return executor.supply(() -> getTargets(queryObject));
+    }
+
+    /**
+     * Same as setPagingParameters when the type facet is not needed: the result is not clustered or the types
+     * are selected
+     *
+     * @return false if the paging depends on the number of types found
+     */
+    private boolean setPagingParameters(Query query, int rowCount, int page, boolean cluster) {
+        if (query.getStart() != null && query.getRows() != null) return true;
+        boolean typesSelected = query.getTypes() != null && !query.getTypes().isEmpty();
+        if (cluster && !typesSelected) return false;
+        int rows = cluster ? rowCount / query.getTypes().size() : rowCount;
+        query.setStart(rows * (page - 1));
+        query.setRows(rows);
+        return true;
+    }
+
     private void setPagingParameters(Query query, FacetMapping facetMapping, int rowCount, int page, boolean cluster) {
         int typeCount;
         if (query.getStart() != null && query.getRows() != null) return;
@@ -425,23 +775,37 @@ public class SearchService {
      * Returns all icons
      */
     public List<Entry> getAllIcons() throws SolrSearcherException {
-        List<Entry> rtn = null;
-        List<String> types = Collections.singletonList("Icon");
-
-        // Simple query to get number of matches
-        Query query = new Query.Builder("*:*").withTypes(types).start(0).numberOfRows(0).build();
-        GroupedResult results = solrConverter.getEntries(query);
-        int rows = results.getNumberOfMatches();
+        try (Stream<Entry> icons = streamAllIcons()) {
+            return icons.collect(Collectors.toList());
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SolrSearcherException) throw (SolrSearcherException) e.getCause();
+            throw e;
+        }
+    }
 
-        // Query all the icons
-        query = new Query.Builder("*:*").withTypes(types).start(0).numberOfRows(rows).build();
-        results = solrConverter.getEntries(query);
+    /**
+     * Streams all icons, see streamEntries
+     */
+    public Stream<Entry> streamAllIcons() throws SolrSearcherException {
+        Query query = new Query.Builder("*:*").withTypes(Collections.singletonList("Icon")).build();
+        return streamEntries(query);
+    }
 
-        if (results != null && results.getResults() != null) {
-            rtn = results.getResults().get(0).getEntries();
-        }
+    /**
+     * Lazily retrieves every entry matching the query (e.g. all the pathways of a species), paging through the
+     * result with a cursor (search.stream.rows entries per request) so memory use is constant regardless of the
+     * number of entries. Close the stream (try-with-resources) if it is not fully consumed.
+     * Errors retrieving pages after the first one are thrown as IllegalStateException caused by a SolrSearcherException
+     *
+     * @param queryObject QueryObject (query, types, species, keywords, compartments), start and rows are ignored
+     * @return Stream of Entry sorted by relevance
+     */
+    public Stream<Entry> streamEntries(Query queryObject) throws SolrSearcherException {
+        return solrConverter.streamEntries(queryObject, streamRows);
+    }
 
-        return rtn;
+    public CompletableFuture<List<Entry>> getAllIconsAsync() {
+        return executor.supply(this::getAllIcons);
     }
 
     private void doAsyncReport(Query queryObject, Set<TargetResult> targetResults) {
@@ -459,64 +823,18 @@ public class SearchService {
      */
     private void doAsyncTargetReport(Query queryObject, Set<TargetResult> targetResults) {
         Set<TargetResult> targetsOnly = targetResults.stream().filter(TargetResult::isTarget).collect(Collectors.toSet());
-        new Thread(() -> report("targets", queryObject, targetsOnly), "ReportTargetThread").start();
+        reportDispatcher.report(ReportDispatcher.TARGETS, queryObject, targetsOnly);
 
         // In the same search we might have one target and term(s) not found. Targets are done in the line above
         // and the others will be the new QueryObject just to be able to reuse the report method.
         Set<String> targetsNotFound = targetResults.stream().filter(t -> !t.isTarget()).map(TargetResult::getTerm).collect(Collectors.toSet());
         if (!targetsNotFound.isEmpty()) {
             queryObject.setQuery(String.join(" ", targetsNotFound));
-            new Thread(() -> report("notfound", queryObject, null), "ReportNotFoundTargetThread").start();
+            reportDispatcher.report(ReportDispatcher.NOT_FOUND, queryObject, null);
         }
     }
 
     private void doAsyncSearchReport(Query queryObject) {
-        new Thread(() -> report("notfound", queryObject, null), "ReportNotFoundThread").start();
-    }
-
-    private void report(String requestMapping, Query queryObject, Set<TargetResult> targetResults) {
-        if (queryObject == null || queryObject.getReportInfo() == null) return;
-
-        try {
-            CredentialsProvider provider = new BasicCredentialsProvider();
-            UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(reportUser, reportPassword);
-            provider.setCredentials(AuthScope.ANY, credentials);
-            CloseableHttpClient client = HttpClients.custom().setDefaultCredentialsProvider(provider).build();
-            URIBuilder uriBuilder = new URIBuilder(this.reportUrl + "/report/search/" + requestMapping);
-            List<NameValuePair> params = new ArrayList<>();
-            params.add(new BasicNameValuePair("releaseNumber", queryObject.getReportInfo().get(RELEASEVERSION.getDesc())));
-            params.add(new BasicNameValuePair("ip", queryObject.getReportInfo().get(IPADDRESS.getDesc())));
-            params.add(new BasicNameValuePair("agent", queryObject.getReportInfo().get(USERAGENT.getDesc())));
-            uriBuilder.addParameters(params);
-
-            HttpPost httpPost = new HttpPost(uriBuilder.toString());
-            httpPost.setHeader("Accept", "application/json");
-            httpPost.setHeader("Content-type", "application/json");
-
-            ObjectMapper objectMapper = new ObjectMapper();
-            if (targetResults != null && !targetResults.isEmpty()) {
-                List<ReportEntity> res = targetResults.stream().map(tr -> new ReportEntity(tr.getTerm(), tr.getResource())).collect(Collectors.toList());
-                StringWriter json = new StringWriter();
-                objectMapper.writeValue(json, res);
-
-                StringEntity entity = new StringEntity(json.toString());
-                httpPost.setEntity(entity);
-            } else {
-                String json = objectMapper.writeValueAsString(new ReportEntity(queryObject.getOriginalQuery(), ""));
-                StringEntity entity = new StringEntity(json);
-                httpPost.setEntity(entity);
-            }
-
-            CloseableHttpResponse response = client.execute(httpPost);
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode != 200) {
-                logger.error("[REP001] The url {} returned the code {} and the report hasn't been created.", uriBuilder.toString(), statusCode);
-            }
-            client.close();
-        } catch (ConnectException e) {
-            logger.error("[REP002] Report service is unavailable");
-        } catch (IOException | URISyntaxException e) {
-            logger.error("[REP003] An unexpected error has occurred when saving a report : ", e);
-        }
+        reportDispatcher.report(ReportDispatcher.NOT_FOUND, queryObject, null);
     }
 }
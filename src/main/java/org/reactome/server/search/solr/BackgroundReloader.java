@@ -0,0 +1,32 @@
+package org.reactome.server.search.solr;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the load of an in-memory structure in the background. Reload requests arriving while a load is running
+ * are folded into a single extra load once it finishes, so index version changes are never missed and never
+ * trigger concurrent loads.
+ */
+class BackgroundReloader {
+
+    private final Executor executor;
+    private final Runnable load;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    BackgroundReloader(Executor executor, Runnable load) {
+        this.executor = executor;
+        this.load = load;
+    }
+
+    void reload() {
+        if (pending.getAndIncrement() > 0) return;
+        executor.execute(() -> {
+            int requested;
+            do {
+                requested = pending.get();
+                load.run();
+            } while (pending.addAndGet(-requested) > 0);
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package org.reactome.server.search.solr;
+
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Retrieves the entries (or documents) for long lists of identifiers. The list is split in chunks of search.batch.chunkSize ids
+ * and up to search.batch.concurrency chunks are requested at the same time. Documents are handed over in the
+ * order of the chunks as soon as each one (and all the previous ones) are in, so only a bounded number of chunks
+ * is held in memory.
+ */
+@Component
+class BatchRetriever {
+
+    interface ChunkLoader<I, T> {
+        List<T> load(List<I> chunk) throws SolrSearcherException;
+    }
+
+    private final int chunkSize;
+    private final int concurrency;
+    private final SearchExecutor executor;
+
+    @Autowired
+    BatchRetriever(@Value("${search.batch.chunkSize:500}") int chunkSize,
+                   @Value("${search.batch.concurrency:4}") int concurrency,
+                   SearchExecutor executor) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.concurrency = Math.max(1, concurrency);
+        this.executor = executor;
+    }
+
+    /**
+     * @param ids      identifiers to retrieve
+     * @param loader   retrieves the entries of a chunk of ids
+     * @param consumer receives the entries, in the calling thread and following the order of the chunks
+     */
+    <I, T> void retrieve(List<I> ids, ChunkLoader<I, T> loader, Consumer<T> consumer) throws SolrSearcherException {
+        if (ids.isEmpty()) return;
+        if (ids.size() <= chunkSize) {
+            loader.load(ids).forEach(consumer);
+            return;
+        }
+        Deque<CompletableFuture<List<T>>> inFlight = new ArrayDeque<>(concurrency);
+        int next = 0;
+        try {
+            while (next < ids.size() || !inFlight.isEmpty()) {
+                while (inFlight.size() < concurrency && next < ids.size()) {
+                    List<I> chunk = ids.subList(next, Math.min(ids.size(), next + chunkSize));
+                    inFlight.add(executor.supply(() -> loader.load(chunk)));
+                    next += chunk.size();
+                }
+                await(inFlight.poll()).forEach(consumer);
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Sorts the entries of a chunk following the order of its ids. Entries without a matching id are left out and
+     * every entry is included once.
+     *
+     * @param byId entries of the chunk by their lower case id
+     */
+    static <I, T> List<T> inOrder(List<I> ids, Map<String, T> byId) {
+        List<T> rtn = new ArrayList<>(byId.size());
+        for (I id : ids) {
+            if (id == null) continue;
+            T entry = byId.remove(id.toString().toLowerCase());
+            if (entry != null) rtn.add(entry);
+        }
+        return rtn;
+    }
+
+    private static <T> List<T> await(CompletableFuture<List<T>> future) throws SolrSearcherException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrSearcherException("Interrupted while retrieving a batch of documents", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolrSearcherException) throw (SolrSearcherException) e.getCause();
+            throw new SolrSearcherException("A batch of documents could not be retrieved", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over every document of a result, page by page, following the cursorMark returned by Solr. While a page
+ * is being consumed the next one is already being retrieved, so at most two pages are held in memory regardless
+ * of the size of the result.
+ * <p>
+ * The first page is retrieved when the cursor is created (errors are thrown straight away). Errors retrieving
+ * later pages are thrown as IllegalStateException with the SolrSearcherException as cause.
+ */
+class DocumentCursor implements Iterator<SolrDocument>, AutoCloseable {
+
+    interface PageLoader {
+        QueryResponse load(String cursorMark) throws SolrSearcherException;
+    }
+
+    private final PageLoader loader;
+    private final SearchExecutor executor;
+    private final int rows;
+
+    private Iterator<SolrDocument> page;
+    private String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+    private CompletableFuture<QueryResponse> next;
+
+    DocumentCursor(PageLoader loader, int rows, SearchExecutor executor) throws SolrSearcherException {
+        this.loader = loader;
+        this.rows = rows;
+        this.executor = executor;
+        accept(loader.load(cursorMark));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext()) {
+            if (next == null) return false;
+            accept(await(next));
+        }
+        return true;
+    }
+
+    @Override
+    public SolrDocument next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return page.next();
+    }
+
+    /**
+     * Cancels the retrieval of the next page, if any
+     */
+    @Override
+    public void close() {
+        if (next != null) next.cancel(true);
+        next = null;
+    }
+
+    /**
+     * @return a sequential stream over the documents, closing it closes the cursor
+     */
+    Stream<SolrDocument> stream() {
+        Spliterator<SolrDocument> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    private void accept(QueryResponse response) {
+        page = response.getResults().iterator();
+        String nextCursorMark = response.getNextCursorMark();
+        boolean last = nextCursorMark == null || nextCursorMark.equals(cursorMark) || response.getResults().size() < rows;
+        cursorMark = nextCursorMark;
+        next = last ? null : executor.supply(() -> loader.load(nextCursorMark));
+    }
+
+    private static QueryResponse await(CompletableFuture<QueryResponse> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrieving the next page", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The next page could not be retrieved", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.client.solrj.StreamingResponseCallback;
+import org.apache.solr.common.SolrDocument;
+import org.reactome.server.search.domain.Entry;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Decodes every document into an Entry while the javabin response is being parsed, so the documents are never
+ * collected in a SolrDocumentList. The QueryResponse returned for a streamed request still has numFound, facets
+ * and the rest of the sections, but an empty list of results.
+ * <p>
+ * Highlighting is written after the documents in the response, so requests relying on it cannot be streamed.
+ */
+class EntryCallback extends StreamingResponseCallback {
+
+    private final EntryDecoder decoder;
+    private final BiConsumer<SolrDocument, Entry> consumer;
+
+    /**
+     * @param consumer receives every (non empty) document together with its entry
+     */
+    EntryCallback(EntryDecoder decoder, BiConsumer<SolrDocument, Entry> consumer) {
+        this.decoder = decoder;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void streamSolrDocument(SolrDocument document) {
+        Entry entry = decoder.decode(document, null);
+        if (entry != null) consumer.accept(document, entry);
+    }
+
+    @Override
+    public void streamDocListInfo(long numFound, long start, Float maxScore) {
+        // numFound is also available from the results of the QueryResponse
+    }
+}
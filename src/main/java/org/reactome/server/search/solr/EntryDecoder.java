@@ -0,0 +1,213 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.common.SolrDocument;
+import org.reactome.server.search.domain.Entry;
+import org.reactome.server.search.domain.IconPhysicalEntity;
+import org.reactome.server.search.solr.SolrConverter.Field;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.reactome.server.search.solr.SolrConverter.Field.*;
+
+/**
+ * Turns a SolrDocument into an Entry. A decoder is compiled once per set of requested fields: it walks the fields
+ * actually present in the document once and dispatches each one through a table restricted to the requested
+ * fields, so the work per document depends on the fields returned and not on the size of the schema.
+ * <p>
+ * Multi-valued fields the decoder knows about but are missing from the document are set to empty (shared,
+ * immutable) collections, as the Entry consumers expect them not to be null.
+ */
+class EntryDecoder {
+
+    private static final Map<Set<Field>, EntryDecoder> DECODERS = new ConcurrentHashMap<>();
+
+    static final EntryDecoder ALL = new EntryDecoder(EnumSet.allOf(Field.class));
+
+    private final Map<String, Field> fields;
+
+    private EntryDecoder(Set<Field> fields) {
+        this.fields = new HashMap<>(fields.size() * 2);
+        for (Field field : fields) this.fields.put(field.name, field);
+    }
+
+    /**
+     * @param fields requested fields, null or empty for all of them
+     * @return the decoder for the given fields
+     */
+    static EntryDecoder forFields(Collection<Field> fields) {
+        if (fields == null || fields.isEmpty()) return ALL;
+        return DECODERS.computeIfAbsent(EnumSet.copyOf(fields), EntryDecoder::new);
+    }
+
+    /**
+     * @param highlighting snippets per dbId, if any
+     * @return the entry or null for a null or empty document
+     */
+    Entry decode(SolrDocument solrDocument, Map<String, Map<String, List<String>>> highlighting) {
+        if (solrDocument == null || solrDocument.isEmpty()) return null;
+
+        Map<String, List<String>> snippets = null;
+        if (highlighting != null) {
+            Object dbId = solrDocument.getFieldValue(DB_ID.name);
+            if (dbId != null) snippets = highlighting.get(dbId);
+        }
+        boolean highlighted = snippets != null;
+
+        Entry entry = new Entry();
+        for (Map.Entry<String, Object> value : solrDocument) {
+            Field field = fields.get(value.getKey());
+            if (field != null) decode(entry, field, value.getValue(), highlighted);
+        }
+        entry.setId(entry.getStId() != null ? entry.getStId() : entry.getDbId());
+        if (highlighted) setHighlighting(entry, snippets);
+        setMissingCollections(entry);
+        return entry;
+    }
+
+    /**
+     * When the document is highlighted the text fields are only taken from the snippets
+     */
+    private static void decode(Entry entry, Field field, Object value, boolean highlighted) {
+        switch (field) {
+            case DB_ID:                 entry.setDbId((String) first(value)); break;
+            case ST_ID:                 entry.setStId((String) first(value)); break;
+            case TYPE:                  entry.setType((String) first(value)); break;
+            case EXACT_TYPE:            entry.setExactType((String) first(value)); break;
+            case IS_DISEASE:            entry.setIsDisease((Boolean) first(value)); break;
+            case HAS_REFERENCE_ENTITY:  entry.setHasReferenceEntity((Boolean) first(value)); break;
+            case HAS_EHLD:              entry.setHasEHLD((Boolean) first(value)); break;
+            case DATABASE_NAME:         entry.setDatabaseName((String) first(value)); break;
+            case REFERENCE_URL:         entry.setReferenceURL((String) first(value)); break;
+            case REGULATOR_ID:          entry.setRegulatorId((String) first(value)); break;
+            case REGULATED_ENTITY_ID:   entry.setRegulatedEntityId((String) first(value)); break;
+            case AUTHORED_PATHWAYS:     entry.setAuthoredPathways((String) first(value)); break;
+            case AUTHORED_REACTIONS:    entry.setAuthoredReactions((String) first(value)); break;
+            case REVIEWED_PATHWAYS:     entry.setReviewedPathways((String) first(value)); break;
+            case REVIEWED_REACTIONS:    entry.setReviewedReactions((String) first(value)); break;
+            case ORCIDID:               entry.setOrcidId((String) first(value)); break;
+            //Only the first species is taken into account
+            case SPECIES:               entry.setSpecies(strings(value)); break;
+            case COMPARTMENT_NAME:      entry.setCompartmentNames(strings(value)); break;
+            case COMPARTMENT_ACCESSION: entry.setCompartmentAccession(strings(value)); break;
+            case REFERENCE_IDENTIFIERS: entry.setReferenceIdentifier(selectRightReferenceIdentifier(value)); break;
+
+            case INFERRED_SUMMATION:    if (highlighted) entry.setSummation((String) first(value)); break;
+            case SUMMATION:             if (!highlighted) entry.setSummation((String) first(value)); break;
+            case NAME:                  if (!highlighted) entry.setName((String) first(value)); break;
+            case REFERENCE_NAME:        if (!highlighted) entry.setReferenceName((String) first(value)); break;
+            case REGULATOR:             if (!highlighted) entry.setRegulator((String) first(value)); break;
+            case REGULATED_ENTITY:      if (!highlighted) entry.setRegulatedEntity((String) first(value)); break;
+
+            // Icon Name stores the plain name. After search the name itself might have the highlighting.
+            case ICON_NAME:             entry.setIconName((String) first(value)); break;
+            case ICON_CURATOR_NAME:     entry.setIconCuratorName((String) first(value)); break;
+            case ICON_CURATOR_ORCIDID:  entry.setIconCuratorOrcidId((String) first(value)); break;
+            case ICON_CURATOR_URL:      entry.setIconCuratorUrl((String) first(value)); break;
+            case ICON_DESIGNER_NAME:    entry.setIconDesignerName((String) first(value)); break;
+            case ICON_DESIGNER_URL:     entry.setIconDesignerUrl((String) first(value)); break;
+            case ICON_DESIGNER_ORCIDID: entry.setIconDesignerOrcidId((String) first(value)); break;
+            case ICON_CATEGORIES:       entry.setIconCategories(strings(value)); break;
+            case ICON_REFERENCES:       entry.setIconReferences(strings(value)); break;
+            case ICON_EHLDS:            entry.setIconEhlds(strings(value)); break;
+            case ICON_PHYSICAL_ENTITIES: entry.setIconPhysicalEntities(iconPhysicalEntities(value)); break;
+
+            case DELETED:               entry.setDeleted((Boolean) first(value)); break;
+            case DELETED_REASON:        entry.setReason((String) first(value)); break;
+            case DELETED_EXPLANATION:   entry.setExplanation((String) first(value)); break;
+            case DELETED_DATE:          entry.setDate((Date) first(value)); break;
+            case DELETED_REPLACEMENT_DB_IDS: entry.setReplacementDbIds(longs(value)); break;
+            case DELETED_REPLACEMENT_ST_IDS: entry.setReplacementStIds(strings(value)); break;
+            default:
+        }
+    }
+
+    private static void setMissingCollections(Entry entry) {
+        if (entry.getSpecies() == null) entry.setSpecies(Collections.emptyList());
+        if (entry.getCompartmentNames() == null) entry.setCompartmentNames(Collections.emptyList());
+        if (entry.getCompartmentAccession() == null) entry.setCompartmentAccession(Collections.emptyList());
+        if (entry.getIconCategories() == null) entry.setIconCategories(Collections.emptyList());
+        if (entry.getIconReferences() == null) entry.setIconReferences(Collections.emptyList());
+        if (entry.getIconEhlds() == null) entry.setIconEhlds(Collections.emptyList());
+        if (entry.getIconPhysicalEntities() == null) entry.setIconPhysicalEntities(Collections.emptySortedSet());
+        if (entry.getReplacementDbIds() == null) entry.setReplacementDbIds(Collections.emptyList());
+        if (entry.getReplacementStIds() == null) entry.setReplacementStIds(Collections.emptyList());
+    }
+
+    private static void setHighlighting(Entry entry, Map<String, List<String>> snippets) {
+        List<String> identifierSnippets = snippets.get(REFERENCE_IDENTIFIERS.name);
+        if (identifierSnippets != null && !identifierSnippets.isEmpty()) {
+            entry.setReferenceIdentifier(selectRightHighlightingForReferenceIdentifiers(identifierSnippets));
+        }
+        String snippet;
+        if ((snippet = snippet(snippets, ST_ID)) != null) entry.setStId(snippet);
+        if ((snippet = snippet(snippets, NAME)) != null) entry.setName(snippet);
+        if ((snippet = snippet(snippets, SUMMATION)) != null) entry.setSummation(snippet);
+        if ((snippet = snippet(snippets, REFERENCE_NAME)) != null) entry.setReferenceName(snippet);
+        if ((snippet = snippet(snippets, REGULATOR)) != null) entry.setRegulator(snippet);
+        if ((snippet = snippet(snippets, REGULATED_ENTITY)) != null) entry.setRegulatedEntity(snippet);
+    }
+
+    private static String snippet(Map<String, List<String>> snippets, Field field) {
+        List<String> snippet = snippets.get(field.name);
+        return snippet == null || snippet.isEmpty() ? null : snippet.get(0);
+    }
+
+    private static String selectRightHighlightingForReferenceIdentifiers(List<String> identifierSnippets) {
+        for (String snippet : identifierSnippets) {
+            if (snippet.contains("highlighting")) {
+                return snippet;
+            }
+        }
+        return identifierSnippets.get(0);
+    }
+
+    private static String selectRightReferenceIdentifier(Object value) {
+        if (!(value instanceof Collection)) return (String) value;
+        String candidate = null;
+        for (Object obj : (Collection<?>) value) {
+            String str = (String) obj;
+            candidate = candidate == null ? str : candidate;
+            if (!str.contains(":")) {
+                return str;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Same as SolrDocument.getFieldValue, the first value of a multi-valued field
+     */
+    private static Object first(Object value) {
+        if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            return values.isEmpty() ? null : values.iterator().next();
+        }
+        return value;
+    }
+
+    private static List<String> strings(Object value) {
+        Collection<?> values = value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+        if (values.isEmpty()) return Collections.emptyList();
+        List<String> rtn = new ArrayList<>(values.size());
+        for (Object obj : values) rtn.add(Objects.toString(obj));
+        return rtn;
+    }
+
+    private static List<Long> longs(Object value) {
+        Collection<?> values = value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+        if (values.isEmpty()) return Collections.emptyList();
+        List<Long> rtn = new ArrayList<>(values.size());
+        for (Object obj : values) rtn.add(Long.parseLong((String) obj));
+        return rtn;
+    }
+
+    private static Set<IconPhysicalEntity> iconPhysicalEntities(Object value) {
+        Set<IconPhysicalEntity> rtn = new TreeSet<>();
+        for (String iconPE : strings(value)) {
+            String[] iconPEs = iconPE.split("#");
+            rtn.add(new IconPhysicalEntity(iconPEs[0], iconPEs[1], iconPEs[2], iconPEs[3]));
+        }
+        return rtn;
+    }
+}
@@ -0,0 +1,70 @@
+package org.reactome.server.search.solr;
+
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the PathwayBitmaps of the index so fireworksFlagging only needs the dbIds of the entities matching the
+ * term, instead of reading and merging their llps and occurrences fields.
+ * <p>
+ * The bitmaps only change once per release, so they are loaded in the background at startup (when
+ * search.fireworks.flagging.index is enabled) and again when the index version changes. Until they are loaded,
+ * getBitmaps returns null and the flagging is done from the fields.
+ */
+@Component
+class FireworksFlaggingIndex implements InitializingBean {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    private final static int PAGE_SIZE = 10000;
+
+    private final boolean enabled;
+    private final SolrCore solrCore;
+    private final BackgroundReloader reloader;
+
+    private volatile PathwayBitmaps bitmaps = null;
+
+    @Autowired
+    FireworksFlaggingIndex(@Value("${search.fireworks.flagging.index:false}") boolean enabled,
+                    SolrCore solrCore,
+                    SearchExecutor executor,
+                    IndexVersionMonitor indexVersionMonitor) {
+        this.enabled = enabled;
+        this.solrCore = solrCore;
+        this.reloader = new BackgroundReloader(executor, this::load);
+        if (enabled) indexVersionMonitor.onIndexChange(this::reload);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) reload();
+    }
+
+    /**
+     * @return the current bitmaps or null if they are not available
+     */
+    PathwayBitmaps getBitmaps() {
+        return bitmaps;
+    }
+
+    void reload() {
+        reloader.reload();
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        try (DocumentCursor documents = solrCore.getFlaggingCursor(PAGE_SIZE)) {
+            PathwayBitmaps bitmaps = PathwayBitmaps.load(documents);
+            this.bitmaps = bitmaps;
+            logger.info("Fireworks flagging bitmaps loaded " + bitmaps.getEntities() + " entities and " + bitmaps.getPathways() + " pathways in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (SolrSearcherException | RuntimeException e) {
+            logger.error("The fireworks flagging bitmaps could not be loaded, the flagging will be done from the fields instead", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.reactome.server.search.solr;
+
+import org.reactome.server.search.domain.HedgeStats;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * When ReplicaSolrClient duplicates a request to a second replica, and how often it is allowed to.
+ * <p>
+ * The delay is the given percentile of the latency of the last WINDOW first attempts (never below minDelay), so
+ * roughly the slowest (100 - percentile)% of the requests are due a hedge; no request is hedged until there are
+ * enough samples. On top of that every request adds budget tokens to a bucket and every hedge takes a whole one,
+ * so the extra load stays below budget times the requests even when a replica turns every request slow.
+ */
+class HedgePolicy {
+
+    private final static int WINDOW = 1024;
+    private final static int RECOMPUTE = 64;
+    private final static long TOKEN = 1000;
+    private final static long MAX_TOKENS = 10 * TOKEN;
+
+    private final double percentile;
+    private final long deposit;
+    private final long minDelay;
+    private final AtomicLongArray latencies = new AtomicLongArray(WINDOW);
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long delay = -1;
+
+    /**
+     * @param percentile percentile (0-100] of the latency after which a request is hedged
+     * @param budget     maximum fraction of the requests that can be hedged
+     * @param minDelay   minimum delay in milliseconds before hedging
+     */
+    HedgePolicy(double percentile, double budget, long minDelay) {
+        this.percentile = Math.min(100, Math.max(1, percentile));
+        this.deposit = Math.round(Math.max(0, budget) * TOKEN);
+        this.minDelay = Math.max(0, minDelay);
+    }
+
+    /**
+     * Counts a new request, adding its share of the budget
+     *
+     * @return milliseconds to wait for the first attempt before hedging, -1 while the latency is not known yet
+     */
+    long requested() {
+        requests.increment();
+        tokens.getAndUpdate(t -> Math.min(MAX_TOKENS, t + deposit));
+        return delay;
+    }
+
+    /**
+     * @param millis latency of a first attempt (the time until it was cancelled when the hedge won)
+     */
+    void record(long millis) {
+        long sample = samples.getAndIncrement();
+        latencies.set((int) (sample % WINDOW), millis);
+        if ((sample + 1) % RECOMPUTE == 0) recompute((int) Math.min(sample + 1, WINDOW));
+    }
+
+    /**
+     * @return true if the budget allows one more hedge (which is then counted)
+     */
+    boolean acquire() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                rejected.increment();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        hedged.increment();
+        return true;
+    }
+
+    /**
+     * Counts a hedge that answered before the first attempt
+     */
+    void won() {
+        wins.increment();
+    }
+
+    HedgeStats getStats() {
+        return new HedgeStats(requests.sum(), hedged.sum(), wins.sum(), rejected.sum(), delay);
+    }
+
+    private void recompute(int size) {
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) sorted[i] = latencies.get(i);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        delay = Math.max(minDelay, sorted[Math.max(0, Math.min(size - 1, index))]);
+    }
+}
@@ -0,0 +1,103 @@
+package org.reactome.server.search.solr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Polls the index version of the Solr cores every solr.index.versionCheck milliseconds (0 disables it) and lets
+ * the registered listeners know when it changes, so anything kept in memory from the index can be reloaded
+ * or invalidated after a new release is indexed.
+ */
+@Component
+class IndexVersionMonitor implements InitializingBean, DisposableBean {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    private final long interval;
+    private final Watch index;
+    private final Watch targetIndex;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    IndexVersionMonitor(SolrCore solrCore, @Value("${solr.index.versionCheck:60000}") long interval) {
+        this.interval = interval;
+        this.index = new Watch("main", solrCore::getIndexVersion);
+        this.targetIndex = new Watch("target", solrCore::getTargetIndexVersion);
+    }
+
+    /**
+     * @param listener run every time the version of the main index changes
+     */
+    void onIndexChange(Runnable listener) {
+        index.listeners.add(listener);
+    }
+
+    /**
+     * @param listener run every time the version of the target index changes
+     */
+    void onTargetIndexChange(Runnable listener) {
+        targetIndex.listeners.add(listener);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (interval <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "IndexVersionMonitorThread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    private void check() {
+        index.check();
+        targetIndex.check();
+    }
+
+    private static class Watch {
+        private final String name;
+        private final Supplier<Long> version;
+        private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+        private Long current;
+
+        Watch(String name, Supplier<Long> version) {
+            this.name = name;
+            this.version = version;
+        }
+
+        void check() {
+            if (listeners.isEmpty()) return;
+            Long latest = version.get();
+            if (latest == null) return; // Solr unreachable, keep whatever is in memory
+            if (current != null && !current.equals(latest)) {
+                logger.info("The " + name + " index version changed from " + current + " to " + latest);
+                for (Runnable listener : listeners) {
+                    try {
+                        listener.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Error while handling the change of the " + name + " index version", e);
+                    }
+                }
+            }
+            current = latest;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.reactome.server.search.solr;
+
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.client.solrj.response.TermsResponse;
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Answers autocomplete requests inside the JVM from a weighted FST built with the terms of search.suggester.field
+ * (weighted by their document frequency), so a keystroke does not need a round trip to the /suggest handler.
+ * <p>
+ * Disabled by default (search.suggester.local). The dictionary is loaded in the background at startup and again
+ * every time the index version changes. Until it is loaded, lookup returns null and the Solr handler is used.
+ */
+@Component
+class LocalSuggester implements InitializingBean {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    private final boolean enabled;
+    private final String field;
+    private final int count;
+    private final SolrCore solrCore;
+    private final BackgroundReloader reloader;
+
+    private volatile Lookup lookup = null;
+
+    @Autowired
+    LocalSuggester(@Value("${search.suggester.local:false}") boolean enabled,
+                   @Value("${search.suggester.field:name}") String field,
+                   @Value("${search.suggester.count:10}") int count,
+                   SolrCore solrCore,
+                   SearchExecutor executor,
+                   IndexVersionMonitor indexVersionMonitor) {
+        this.enabled = enabled;
+        this.field = field;
+        this.count = count;
+        this.solrCore = solrCore;
+        this.reloader = new BackgroundReloader(executor, this::load);
+        if (enabled) indexVersionMonitor.onIndexChange(this::reload);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) reload();
+    }
+
+    /**
+     * Completes the last word of the query with the most frequent terms starting with it.
+     *
+     * @param query String of the query parameter given
+     * @return the suggestions or null when the dictionary is not available (the Solr handler has to be used)
+     */
+    List<String> lookup(String query) {
+        Lookup lookup = this.lookup;
+        if (lookup == null || query == null) return null;
+        int split = query.lastIndexOf(' ');
+        String prefix = query.substring(0, split + 1);
+        String word = query.substring(split + 1).toLowerCase(Locale.ROOT);
+        if (word.isEmpty()) return Collections.emptyList();
+        try {
+            List<String> rtn = new ArrayList<>(count);
+            for (Lookup.LookupResult result : lookup.lookup(word, false, count)) {
+                rtn.add(prefix + result.key);
+            }
+            return rtn;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Local suggester lookup failed for " + query, e);
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the dictionary in the background
+     */
+    void reload() {
+        reloader.reload();
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        try {
+            List<TermsResponse.Term> terms = solrCore.getTerms(field);
+            if (terms.isEmpty()) {
+                logger.warn("No terms found for " + field + ", the local suggester is not available");
+                return;
+            }
+            WFSTCompletionLookup wfst = new WFSTCompletionLookup(new ByteBuffersDirectory(), "suggester", true);
+            wfst.build(new TermsIterator(terms));
+            lookup = wfst;
+            logger.info("Local suggester loaded " + wfst.getCount() + " terms (" + wfst.ramBytesUsed() / 1024 + "KB) in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (SolrSearcherException | IOException | RuntimeException e) {
+            logger.error("The local suggester could not be loaded, the Solr handler will be used instead", e);
+        }
+    }
+
+    private static class TermsIterator implements InputIterator {
+        private final Iterator<TermsResponse.Term> terms;
+        private long weight;
+
+        TermsIterator(List<TermsResponse.Term> terms) {
+            this.terms = terms.iterator();
+        }
+
+        @Override
+        public BytesRef next() {
+            while (terms.hasNext()) {
+                TermsResponse.Term term = terms.next();
+                if (term.getTerm() == null || term.getTerm().isEmpty()) continue;
+                weight = term.getFrequency();
+                return new BytesRef(term.getTerm());
+            }
+            return null;
+        }
+
+        @Override
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.json.BucketBasedJsonFacet;
+import org.apache.solr.client.solrj.response.json.BucketJsonFacet;
+import org.apache.solr.client.solrj.response.json.NestableJsonFacet;
+import org.reactome.server.search.domain.FacetContainer;
+import org.reactome.server.search.domain.FacetList;
+import org.reactome.server.search.domain.FacetMapping;
+import org.reactome.server.search.domain.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static org.reactome.server.search.solr.SolrConverter.Field.*;
+
+/**
+ * Faceting of species, types, keywords and compartments with the JSON Facet API (when search.facets.json is
+ * enabled) instead of the facet fields of the /facet handler.
+ * <p>
+ * Each dimension is counted in a domain without its own filter (excludeTags), as the handler does, so the request
+ * has the same four facets. Selected facets that contradict the other filters have no count there and are dropped
+ * from the query. The counts only change when every selected facet of a dimension is dropped (its filter
+ * disappears), and only then a second request counts the facets and the total without the filters of the dropped
+ * dimensions. Facets of a dimension that is only partially dropped keep the counts of the original filter.
+ */
+@Component
+class MultiSelectFacets {
+
+    private final static String TOTAL = "total"; // "count" is the count of the whole domain
+
+    private enum Dimension {
+        SPECIES(SPECIES_FACET, "sf", Query::getSpecies, FacetMapping::setSpeciesFacet),
+        TYPE(TYPES, "tf", Query::getTypes, FacetMapping::setTypeFacet),
+        KEYWORD(KEYWORDS, "kf", Query::getKeywords, FacetMapping::setKeywordFacet),
+        COMPARTMENT(COMPARTMENT_FACET, "cf", Query::getCompartments, FacetMapping::setCompartmentFacet);
+
+        private final SolrConverter.Field field;
+        private final String tag;
+        private final Function<Query, List<String>> selection;
+        private final BiConsumer<FacetMapping, FacetList> setter;
+
+        Dimension(SolrConverter.Field field, String tag, Function<Query, List<String>> selection, BiConsumer<FacetMapping, FacetList> setter) {
+            this.field = field;
+            this.tag = tag;
+            this.selection = selection;
+            this.setter = setter;
+        }
+
+        /**
+         * @return the selected facets of the query without blanks, empty if there are none
+         */
+        private List<String> selected(Query query) {
+            List<String> rtn = new ArrayList<>();
+            List<String> selection = this.selection.apply(query);
+            if (selection != null) {
+                for (String facet : selection) if (facet != null && !facet.isEmpty()) rtn.add(facet);
+            }
+            return rtn;
+        }
+    }
+
+    private final boolean enabled;
+
+    @Autowired
+    MultiSelectFacets(@Value("${search.facets.json:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the json.facet parameter, each dimension without its own filter
+     */
+    String request() {
+        StringJoiner rtn = new StringJoiner(",", "{", "}");
+        for (Dimension dimension : Dimension.values()) {
+            rtn.add(terms(dimension, EnumSet.of(dimension)));
+        }
+        return rtn.toString();
+    }
+
+    /**
+     * @param response response of request
+     * @return the json.facet parameter counting the facets and the total without the filters of the dimensions
+     * whose selected facets are all dropped, or null when there are none and the response needs no correction
+     */
+    String correction(QueryResponse response, Query query) {
+        EnumSet<Dimension> dropped = dropped(response.getJsonFacetingResponse(), query);
+        if (dropped.isEmpty()) return null;
+        StringJoiner rtn = new StringJoiner(",", "{", "}");
+        for (Dimension dimension : Dimension.values()) {
+            EnumSet<Dimension> excluded = EnumSet.copyOf(dropped);
+            excluded.add(dimension);
+            rtn.add(terms(dimension, excluded));
+        }
+        rtn.add("\"" + TOTAL + "\":{\"type\":\"query\",\"q\":\"*:*\",\"domain\":" + domain(dropped) + "}");
+        return rtn.toString();
+    }
+
+    /**
+     * Converts the response of request into a FacetMapping. When correct is true, the selected facets that
+     * contradict the other filters are left out (when correction returns null, otherwise see the method below).
+     */
+    FacetMapping toFacetMapping(QueryResponse response, Query query, boolean correct) {
+        return toFacetMapping(response.getJsonFacetingResponse(), null, query, correct);
+    }
+
+    /**
+     * Converts the responses of request and correction into a FacetMapping without the selected facets that
+     * contradict the other filters, with the counts of the correction
+     */
+    FacetMapping toFacetMapping(QueryResponse response, QueryResponse correction, Query query) {
+        return toFacetMapping(response.getJsonFacetingResponse(), correction.getJsonFacetingResponse(), query, true);
+    }
+
+    private FacetMapping toFacetMapping(NestableJsonFacet facets, NestableJsonFacet corrected, Query query, boolean correct) {
+        Map<Dimension, List<String>> valid = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            List<String> selected = dimension.selected(query);
+            if (correct && !selected.isEmpty()) selected.retainAll(names(buckets(facets, dimension.field.name)));
+            valid.put(dimension, selected);
+        }
+
+        NestableJsonFacet counts = facets;
+        FacetMapping facetMapping = new FacetMapping();
+        if (corrected == null) {
+            // same as numFound, also for grouped responses
+            facetMapping.setTotalNumFount(facets == null ? 0 : facets.getCount());
+        } else {
+            NestableJsonFacet count = corrected.getQueryFacet(TOTAL);
+            facetMapping.setTotalNumFount(count == null ? 0 : count.getCount());
+            counts = corrected;
+        }
+        for (Dimension dimension : Dimension.values()) {
+            dimension.setter.accept(facetMapping, getFacets(buckets(counts, dimension.field.name), valid.get(dimension)));
+        }
+        return facetMapping;
+    }
+
+    /**
+     * @return the selected dimensions none of whose selected facets has a count
+     */
+    private EnumSet<Dimension> dropped(NestableJsonFacet facets, Query query) {
+        EnumSet<Dimension> rtn = EnumSet.noneOf(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            List<String> selected = dimension.selected(query);
+            if (selected.isEmpty()) continue;
+            selected.retainAll(names(buckets(facets, dimension.field.name)));
+            if (selected.isEmpty()) rtn.add(dimension);
+        }
+        return rtn;
+    }
+
+    private FacetList getFacets(List<BucketJsonFacet> buckets, List<String> selectedItems) {
+        List<FacetContainer> selected = new ArrayList<>();
+        List<FacetContainer> available = new ArrayList<>();
+        for (BucketJsonFacet bucket : buckets) {
+            String name = bucket.getVal().toString();
+            if (selectedItems.contains(name)) {
+                selected.add(new FacetContainer(name, bucket.getCount()));
+            } else {
+                available.add(new FacetContainer(name, bucket.getCount()));
+            }
+        }
+        return new FacetList(selected, available);
+    }
+
+    private static List<BucketJsonFacet> buckets(NestableJsonFacet facets, String key) {
+        // Solr leaves the facets out when nothing matches
+        BucketBasedJsonFacet facet = facets == null ? null : facets.getBucketBasedFacets(key);
+        return facet == null ? Collections.emptyList() : facet.getBuckets();
+    }
+
+    private static Set<String> names(List<BucketJsonFacet> buckets) {
+        Set<String> rtn = new HashSet<>();
+        for (BucketJsonFacet bucket : buckets) rtn.add(bucket.getVal().toString());
+        return rtn;
+    }
+
+    private static String terms(Dimension dimension, EnumSet<Dimension> excluded) {
+        return "\"" + dimension.field.name + "\":{\"type\":\"terms\",\"field\":\"" + dimension.field.name
+                + "\",\"limit\":-1,\"mincount\":1,\"domain\":" + domain(excluded) + "}";
+    }
+
+    private static String domain(EnumSet<Dimension> excluded) {
+        StringJoiner tags = new StringJoiner("\",\"", "[\"", "\"]");
+        for (Dimension dimension : excluded) tags.add(dimension.tag);
+        return "{\"excludeTags\":" + tags + "}";
+    }
+}
@@ -0,0 +1,125 @@
+package org.reactome.server.search.solr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the occurrences fields, "Diagram:Bool(IsInDiagram):CSV of occurrences:CSV of Interacts With" where a
+ * "#" stands for an empty list, without splitting them. reset finds the separators in a single pass and the
+ * accessors work on those positions, so only the values that are actually asked for become Strings and
+ * filtering by diagram (startsWith) or by flag allocates nothing.
+ * <p>
+ * A cursor is meant to be reset for every value of a field and is not thread safe. The lists returned by
+ * occurrences and interactsWith are reused and are only valid until the next reset.
+ */
+final class OccurrenceCursor {
+
+    private static final char FIELD_SEPARATOR = ':';
+    private static final char LIST_SEPARATOR = ',';
+    private static final char EMPTY = '#';
+
+    private final List<String> occurrences = new ArrayList<>();
+    private final List<String> interactsWith = new ArrayList<>();
+
+    private CharSequence raw;
+    // end of the diagram, the flag and the occurrences (the interactors go from occurrencesEnd + 1 to interactsWithEnd)
+    private int diagramEnd;
+    private int flagEnd;
+    private int occurrencesEnd;
+    private int interactsWithEnd;
+
+    /**
+     * @return false if the value does not have the four fields, in which case the cursor must not be read
+     */
+    boolean reset(CharSequence raw) {
+        this.raw = raw;
+        occurrences.clear();
+        interactsWith.clear();
+        int field = 0;
+        int length = raw.length();
+        for (int i = 0; i < length && field < 4; i++) {
+            if (raw.charAt(i) != FIELD_SEPARATOR) continue;
+            switch (field++) {
+                case 0: diagramEnd = i; break;
+                case 1: flagEnd = i; break;
+                case 2: occurrencesEnd = i; break;
+                case 3: interactsWithEnd = i; break;
+            }
+        }
+        if (field < 3) return false;
+        if (field == 3) interactsWithEnd = length;
+        return true;
+    }
+
+    /**
+     * @return true if the raw value (and so the diagram, for prefixes without separators) starts with prefix
+     */
+    boolean startsWith(CharSequence prefix) {
+        if (prefix.length() > raw.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (raw.charAt(i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the diagram is exactly the given one
+     */
+    boolean isDiagram(CharSequence diagram) {
+        return diagramEnd == diagram.length() && startsWith(diagram);
+    }
+
+    String diagram() {
+        return raw.subSequence(0, diagramEnd).toString();
+    }
+
+    /**
+     * Same as Boolean.valueOf of the flag
+     */
+    boolean inDiagram() {
+        int start = diagramEnd + 1;
+        if (flagEnd - start != 4) return false;
+        return Character.toLowerCase(raw.charAt(start)) == 't'
+                && Character.toLowerCase(raw.charAt(start + 1)) == 'r'
+                && Character.toLowerCase(raw.charAt(start + 2)) == 'u'
+                && Character.toLowerCase(raw.charAt(start + 3)) == 'e';
+    }
+
+    boolean hasOccurrences() {
+        return !isEmpty(flagEnd + 1, occurrencesEnd);
+    }
+
+    boolean hasInteractsWith() {
+        return !isEmpty(occurrencesEnd + 1, interactsWithEnd);
+    }
+
+    /**
+     * @return the occurrences, empty for "#"
+     */
+    List<String> occurrences() {
+        if (occurrences.isEmpty() && hasOccurrences()) split(flagEnd + 1, occurrencesEnd, occurrences);
+        return occurrences;
+    }
+
+    /**
+     * @return the interactors, empty for "#"
+     */
+    List<String> interactsWith() {
+        if (interactsWith.isEmpty() && hasInteractsWith()) split(occurrencesEnd + 1, interactsWithEnd, interactsWith);
+        return interactsWith;
+    }
+
+    private boolean isEmpty(int start, int end) {
+        return start >= end || (end - start == 1 && raw.charAt(start) == EMPTY);
+    }
+
+    private void split(int start, int end, List<String> target) {
+        int from = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || raw.charAt(i) == LIST_SEPARATOR) {
+                if (i > from) target.add(raw.subSequence(from, i).toString());
+                from = i + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.common.SolrDocument;
+import org.reactome.server.search.domain.DiagramOccurrencesResult;
+import org.reactome.server.search.domain.Query;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.*;
+
+import static org.reactome.server.search.solr.SolrConverter.Field.*;
+
+/**
+ * Read-only copy of the occurrences and occurrencesWithInteractor fields of the whole index.
+ * <p>
+ * Every stId (entities, diagrams, occurrences and interactors) is stored once and referred to by its ordinal in
+ * a sorted array. Each field is kept as adjacency lists in compressed rows: entity, then its diagrams (with the
+ * IsInDiagram flag), then the occurrences and interactors of each diagram. The lists are int arrays allocated
+ * off-heap, so the graph costs the garbage collector little more than the stIds themselves.
+ */
+class OccurrenceGraph {
+
+    private final static int IN_DIAGRAM = 0x80000000;
+    private final static byte NO_REFERENCE_ENTITY = 1; // hasReferenceEntity:false
+    private final static byte REFERENCE_SUMMARY = 2;   // isReferenceSummary:true
+
+    private final String[] names;
+    private final int[] entityOfName;
+    private final long[] dbIds;
+    private final int[] entityOfDbId;
+    private final byte[] flags;
+    private final Adjacency occurrences;
+    private final Adjacency occurrencesWithInteractor;
+
+    private OccurrenceGraph(Builder builder) {
+        // ordinals were given in order of appearance, names are sorted so stIds can be found with a binary search
+        Integer[] order = new Integer[builder.names.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(builder.names.get(a), builder.names.get(b)));
+        int[] remap = new int[order.length];
+        names = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            names[i] = builder.names.get(order[i]);
+            remap[order[i]] = i;
+        }
+
+        int entities = builder.entityNames.size;
+        entityOfName = new int[names.length];
+        Arrays.fill(entityOfName, -1);
+        for (int entity = 0; entity < entities; entity++) {
+            int name = builder.entityNames.get(entity);
+            if (name >= 0 && entityOfName[remap[name]] < 0) entityOfName[remap[name]] = entity;
+        }
+
+        Integer[] byDbId = new Integer[entities];
+        for (int i = 0; i < entities; i++) byDbId[i] = i;
+        Arrays.sort(byDbId, Comparator.comparingLong(i -> builder.dbIds[i]));
+        dbIds = new long[entities];
+        entityOfDbId = new int[entities];
+        for (int i = 0; i < entities; i++) {
+            dbIds[i] = builder.dbIds[byDbId[i]];
+            entityOfDbId[i] = byDbId[i];
+        }
+
+        flags = Arrays.copyOf(builder.flags, entities);
+        occurrences = builder.occurrences.build(remap);
+        occurrencesWithInteractor = builder.occurrencesWithInteractor.build(remap);
+    }
+
+    /**
+     * @return the graph of the given documents (dbId, stId, hasReferenceEntity, isReferenceSummary and the two
+     * occurrences fields)
+     */
+    static OccurrenceGraph load(Iterator<SolrDocument> documents) {
+        Builder builder = new Builder();
+        OccurrenceCursor cursor = new OccurrenceCursor();
+        while (documents.hasNext()) builder.add(documents.next(), cursor);
+        return new OccurrenceGraph(builder);
+    }
+
+    int getEntities() {
+        return dbIds.length;
+    }
+
+    int getNames() {
+        return names.length;
+    }
+
+    /**
+     * @return the stIds of the diagrams where the entity occurs, or null if the entity is not in the graph
+     */
+    List<String> getDiagrams(long dbId, boolean includeInteractors, boolean directlyInDiagram) {
+        int position = Arrays.binarySearch(dbIds, dbId);
+        if (position < 0) return null;
+        Adjacency adjacency = includeInteractors ? occurrencesWithInteractor : occurrences;
+        int entity = entityOfDbId[position];
+        int from = adjacency.entityStart.get(entity);
+        int to = adjacency.entityStart.get(entity + 1);
+        List<String> rtn = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int diagram = adjacency.diagrams.get(i);
+            if (directlyInDiagram && (diagram & IN_DIAGRAM) == 0) continue;
+            rtn.add(names[diagram & ~IN_DIAGRAM]);
+        }
+        return rtn;
+    }
+
+    /**
+     * @return true if the stId is one of the entities of the graph
+     */
+    boolean contains(String stId) {
+        int name = find(stId);
+        return name >= 0 && entityOfName[name] >= 0;
+    }
+
+    /**
+     * Same as the first occurrence of the entity starting with diagramPrefix, as read from Solr
+     *
+     * @return the occurrences or null if there are none or the entity is out of the scope
+     */
+    DiagramOccurrencesResult getDiagramOccurrences(String stId, String diagramPrefix, boolean includeInteractors, Query.Scope scope) {
+        int name = find(stId);
+        if (name < 0 || entityOfName[name] < 0) return null;
+        int entity = entityOfName[name];
+        if (scope == Query.Scope.REFERENCE_ENTITY && (flags[entity] & NO_REFERENCE_ENTITY) == 0) return null;
+        if (scope == Query.Scope.PHYSICAL_ENTITY && (flags[entity] & REFERENCE_SUMMARY) != 0) return null;
+
+        Adjacency adjacency = includeInteractors ? occurrencesWithInteractor : occurrences;
+        int from = adjacency.entityStart.get(entity);
+        int to = adjacency.entityStart.get(entity + 1);
+        for (int i = from; i < to; i++) {
+            int diagram = adjacency.diagrams.get(i);
+            String diagramStId = names[diagram & ~IN_DIAGRAM];
+            if (diagramStId.startsWith(diagramPrefix)) {
+                return new DiagramOccurrencesResult(diagramStId, (diagram & IN_DIAGRAM) != 0,
+                        names(adjacency.occurrenceStart, adjacency.occurrences, i),
+                        names(adjacency.interactorStart, adjacency.interactors, i));
+            }
+        }
+        return null;
+    }
+
+    private List<String> names(IntBuffer start, IntBuffer ordinals, int diagram) {
+        int from = start.get(diagram);
+        int to = start.get(diagram + 1);
+        List<String> rtn = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) rtn.add(names[ordinals.get(i)]);
+        return rtn;
+    }
+
+    private int find(String stId) {
+        if (stId == null) return -1;
+        int position = Arrays.binarySearch(names, stId.trim(), String.CASE_INSENSITIVE_ORDER);
+        return position < 0 ? -1 : position;
+    }
+
+    /**
+     * One occurrences field in compressed rows, the IntBuffers are absolute-indexed views of direct buffers
+     */
+    private static class Adjacency {
+        private final IntBuffer entityStart;
+        private final IntBuffer diagrams;
+        private final IntBuffer occurrenceStart;
+        private final IntBuffer occurrences;
+        private final IntBuffer interactorStart;
+        private final IntBuffer interactors;
+
+        private Adjacency(IntBuffer entityStart, IntBuffer diagrams, IntBuffer occurrenceStart, IntBuffer occurrences, IntBuffer interactorStart, IntBuffer interactors) {
+            this.entityStart = entityStart;
+            this.diagrams = diagrams;
+            this.occurrenceStart = occurrenceStart;
+            this.occurrences = occurrences;
+            this.interactorStart = interactorStart;
+            this.interactors = interactors;
+        }
+    }
+
+    private static class Builder {
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final IntList entityNames = new IntList();
+        private long[] dbIds = new long[1024];
+        private byte[] flags = new byte[1024];
+        private final AdjacencyBuilder occurrences = new AdjacencyBuilder();
+        private final AdjacencyBuilder occurrencesWithInteractor = new AdjacencyBuilder();
+
+        private void add(SolrDocument document, OccurrenceCursor cursor) {
+            Object dbId = document.getFieldValue(DB_ID.name);
+            if (dbId == null) return;
+            int entity = entityNames.size;
+            if (entity == dbIds.length) {
+                dbIds = Arrays.copyOf(dbIds, entity * 2);
+                flags = Arrays.copyOf(flags, entity * 2);
+            }
+            dbIds[entity] = Long.parseLong(dbId.toString());
+            Object stId = document.getFieldValue(ST_ID.name);
+            entityNames.add(stId == null ? -1 : ordinal(stId.toString()));
+            byte flag = 0;
+            if (Boolean.FALSE.equals(document.getFieldValue(HAS_REFERENCE_ENTITY.name))) flag |= NO_REFERENCE_ENTITY;
+            if (Boolean.TRUE.equals(document.getFieldValue(IS_REFERENCE_SUMMARY.name))) flag |= REFERENCE_SUMMARY;
+            flags[entity] = flag;
+            occurrences.add(this, document.getFieldValues(OCCURRENCES.name), cursor);
+            occurrencesWithInteractor.add(this, document.getFieldValues(OCCURRENCES_INTERACTOR.name), cursor);
+        }
+
+        private int ordinal(String name) {
+            Integer ordinal = ordinals.get(name.toUpperCase(Locale.ROOT));
+            if (ordinal == null) {
+                ordinal = names.size();
+                ordinals.put(name.toUpperCase(Locale.ROOT), ordinal);
+                names.add(name);
+            }
+            return ordinal;
+        }
+    }
+
+    private static class AdjacencyBuilder {
+        private final IntList entityStart = new IntList();
+        private final IntList diagrams = new IntList();
+        private final IntList occurrenceStart = new IntList();
+        private final IntList occurrences = new IntList();
+        private final IntList interactorStart = new IntList();
+        private final IntList interactors = new IntList();
+
+        private void add(Builder builder, Collection<Object> values, OccurrenceCursor cursor) {
+            entityStart.add(diagrams.size);
+            if (values == null) return;
+            for (Object value : values) {
+                if (!cursor.reset(value.toString())) continue;
+                int diagram = builder.ordinal(cursor.diagram());
+                diagrams.add(cursor.inDiagram() ? diagram | IN_DIAGRAM : diagram);
+                occurrenceStart.add(occurrences.size);
+                for (String occurrence : cursor.occurrences()) occurrences.add(builder.ordinal(occurrence));
+                interactorStart.add(interactors.size);
+                for (String interactor : cursor.interactsWith()) interactors.add(builder.ordinal(interactor));
+            }
+        }
+
+        private Adjacency build(int[] remap) {
+            entityStart.add(diagrams.size);
+            occurrenceStart.add(occurrences.size);
+            interactorStart.add(interactors.size);
+            for (int i = 0; i < diagrams.size; i++) {
+                int diagram = diagrams.get(i);
+                diagrams.set(i, remap[diagram & ~IN_DIAGRAM] | (diagram & IN_DIAGRAM));
+            }
+            for (int i = 0; i < occurrences.size; i++) occurrences.set(i, remap[occurrences.get(i)]);
+            for (int i = 0; i < interactors.size; i++) interactors.set(i, remap[interactors.get(i)]);
+            return new Adjacency(entityStart.toBuffer(), diagrams.toBuffer(), occurrenceStart.toBuffer(), occurrences.toBuffer(), interactorStart.toBuffer(), interactors.toBuffer());
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[1024];
+        private int size = 0;
+
+        private void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        private int get(int index) {
+            return values[index];
+        }
+
+        private void set(int index, int value) {
+            values[index] = value;
+        }
+
+        private IntBuffer toBuffer() {
+            IntBuffer buffer = ByteBuffer.allocateDirect(Math.max(1, size) * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+            buffer.put(values, 0, size);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.reactome.server.search.solr;
+
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps an OccurrenceGraph of the index so getContainingPathwaysOf and getDiagramOccurrencesResult do not need to
+ * fetch and parse the occurrences fields on every call.
+ * <p>
+ * The occurrences only change once per release, so the graph is loaded in the background at startup (when
+ * search.occurrences.index is enabled) and again when the index version changes. Until it is loaded, getGraph
+ * returns null and Solr is queried.
+ */
+@Component
+class OccurrenceIndex implements InitializingBean {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    private final static int PAGE_SIZE = 1000;
+
+    private final boolean enabled;
+    private final SolrCore solrCore;
+    private final BackgroundReloader reloader;
+
+    private volatile OccurrenceGraph graph = null;
+
+    @Autowired
+    OccurrenceIndex(@Value("${search.occurrences.index:false}") boolean enabled,
+                    SolrCore solrCore,
+                    SearchExecutor executor,
+                    IndexVersionMonitor indexVersionMonitor) {
+        this.enabled = enabled;
+        this.solrCore = solrCore;
+        this.reloader = new BackgroundReloader(executor, this::load);
+        if (enabled) indexVersionMonitor.onIndexChange(this::reload);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) reload();
+    }
+
+    /**
+     * @return the current graph or null if it is not available
+     */
+    OccurrenceGraph getGraph() {
+        return graph;
+    }
+
+    void reload() {
+        reloader.reload();
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        try (DocumentCursor documents = solrCore.getOccurrencesCursor(PAGE_SIZE)) {
+            OccurrenceGraph graph = OccurrenceGraph.load(documents);
+            this.graph = graph;
+            logger.info("Occurrence graph loaded " + graph.getEntities() + " entities and " + graph.getNames() + " stIds in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (SolrSearcherException | RuntimeException e) {
+            logger.error("The occurrence graph could not be loaded, the occurrences will be queried instead", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.common.SolrDocument;
+import org.reactome.server.search.domain.FireworksOccurrencesResult;
+
+import java.util.*;
+
+import static org.reactome.server.search.solr.SolrConverter.Field.*;
+
+/**
+ * The pathways every entity flags in the Fireworks: its llps and the diagrams where it has interactors (with and
+ * without the interactors field), as sets of dense pathway ordinals.
+ * <p>
+ * The sets of each entity are small, so they are stored as sorted ordinal arrays (in compressed rows, the
+ * equivalent of the array containers of a Roaring bitmap) and a flagging is the union of the sets of the matching
+ * entities in two BitSets, followed by an andNot to remove the llps from the interactors.
+ */
+class PathwayBitmaps {
+
+    private final String[] pathways;
+    private final long[] dbIds;
+    private final int[] entityOfDbId;
+    private final Sets llps;
+    private final Sets interactsWith;
+    private final Sets interactsWithInteractor;
+
+    private PathwayBitmaps(Builder builder) {
+        pathways = builder.pathways.toArray(new String[0]);
+        int entities = builder.entities;
+        Integer[] byDbId = new Integer[entities];
+        for (int i = 0; i < entities; i++) byDbId[i] = i;
+        Arrays.sort(byDbId, Comparator.comparingLong(i -> builder.dbIds[i]));
+        dbIds = new long[entities];
+        entityOfDbId = new int[entities];
+        for (int i = 0; i < entities; i++) {
+            dbIds[i] = builder.dbIds[byDbId[i]];
+            entityOfDbId[i] = byDbId[i];
+        }
+        llps = builder.llps.build();
+        interactsWith = builder.interactsWith.build();
+        interactsWithInteractor = builder.interactsWithInteractor.build();
+    }
+
+    /**
+     * @return the sets of the given documents (dbId, llps and the two occurrences fields)
+     */
+    static PathwayBitmaps load(Iterator<SolrDocument> documents) {
+        Builder builder = new Builder();
+        OccurrenceCursor cursor = new OccurrenceCursor();
+        while (documents.hasNext()) builder.add(documents.next(), cursor);
+        return new PathwayBitmaps(builder);
+    }
+
+    int getEntities() {
+        return dbIds.length;
+    }
+
+    int getPathways() {
+        return pathways.length;
+    }
+
+    /**
+     * Adds the pathways flagged by the entity to llps and interactsWith (nothing if the entity is unknown)
+     */
+    void union(long dbId, boolean includeInteractors, BitSet llps, BitSet interactsWith) {
+        int position = Arrays.binarySearch(dbIds, dbId);
+        if (position < 0) return;
+        int entity = entityOfDbId[position];
+        this.llps.union(entity, llps);
+        (includeInteractors ? this.interactsWithInteractor : this.interactsWith).union(entity, interactsWith);
+    }
+
+    /**
+     * @return the flagging of the union of llps and interactsWith, without the llps in interactsWith
+     */
+    FireworksOccurrencesResult toResult(BitSet llps, BitSet interactsWith) {
+        FireworksOccurrencesResult rtn = new FireworksOccurrencesResult();
+        interactsWith.andNot(llps);
+        List<String> llpsStIds = new ArrayList<>(llps.cardinality());
+        for (int i = llps.nextSetBit(0); i >= 0; i = llps.nextSetBit(i + 1)) llpsStIds.add(pathways[i]);
+        rtn.addLlps(llpsStIds);
+        for (int i = interactsWith.nextSetBit(0); i >= 0; i = interactsWith.nextSetBit(i + 1)) rtn.addInteractsWith(pathways[i]);
+        return rtn;
+    }
+
+    /**
+     * Sorted ordinals of each entity in compressed rows
+     */
+    private static class Sets {
+        private final int[] start;
+        private final int[] ordinals;
+
+        private Sets(int[] start, int[] ordinals) {
+            this.start = start;
+            this.ordinals = ordinals;
+        }
+
+        private void union(int entity, BitSet target) {
+            for (int i = start[entity]; i < start[entity + 1]; i++) target.set(ordinals[i]);
+        }
+    }
+
+    private static class Builder {
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final List<String> pathways = new ArrayList<>();
+        private long[] dbIds = new long[1024];
+        private int entities = 0;
+        private final SetsBuilder llps = new SetsBuilder();
+        private final SetsBuilder interactsWith = new SetsBuilder();
+        private final SetsBuilder interactsWithInteractor = new SetsBuilder();
+
+        private void add(SolrDocument document, OccurrenceCursor cursor) {
+            Object dbId = document.getFieldValue(DB_ID.name);
+            Collection<Object> llpsValues = document.getFieldValues(LLPS.name);
+            Collection<Object> occurrences = document.getFieldValues(OCCURRENCES.name);
+            Collection<Object> occurrencesWithInteractor = document.getFieldValues(OCCURRENCES_INTERACTOR.name);
+            // entities that flag nothing are left out
+            if (dbId == null || (llpsValues == null && occurrences == null && occurrencesWithInteractor == null)) return;
+            if (entities == dbIds.length) dbIds = Arrays.copyOf(dbIds, entities * 2);
+            dbIds[entities++] = Long.parseLong(dbId.toString());
+
+            if (llpsValues != null) for (Object value : llpsValues) llps.add(ordinal(value.toString()));
+            llps.next();
+            addInteractsWith(interactsWith, occurrences, cursor);
+            addInteractsWith(interactsWithInteractor, occurrencesWithInteractor, cursor);
+        }
+
+        private void addInteractsWith(SetsBuilder sets, Collection<Object> values, OccurrenceCursor cursor) {
+            if (values != null) {
+                for (Object value : values) {
+                    if (cursor.reset(value.toString()) && cursor.hasInteractsWith()) sets.add(ordinal(cursor.diagram()));
+                }
+            }
+            sets.next();
+        }
+
+        private int ordinal(String pathway) {
+            Integer ordinal = ordinals.get(pathway);
+            if (ordinal == null) {
+                ordinal = pathways.size();
+                ordinals.put(pathway, ordinal);
+                pathways.add(pathway);
+            }
+            return ordinal;
+        }
+    }
+
+    private static class SetsBuilder {
+        private int[] start = new int[1025];
+        private int[] ordinals = new int[1024];
+        private int entities = 0;
+        private int size = 0;
+
+        private void add(int ordinal) {
+            if (size == ordinals.length) ordinals = Arrays.copyOf(ordinals, size * 2);
+            ordinals[size++] = ordinal;
+        }
+
+        /**
+         * Closes the set of the current entity, sorting it and removing the duplicates
+         */
+        private void next() {
+            int from = start[entities];
+            Arrays.sort(ordinals, from, size);
+            int end = from;
+            for (int i = from; i < size; i++) {
+                if (i == from || ordinals[i] != ordinals[end - 1]) ordinals[end++] = ordinals[i];
+            }
+            size = end;
+            if (++entities + 1 > start.length) start = Arrays.copyOf(start, start.length * 2);
+            start[entities] = size;
+        }
+
+        private Sets build() {
+            return new Sets(Arrays.copyOf(start, entities + 1), Arrays.copyOf(ordinals, size));
+        }
+    }
+}
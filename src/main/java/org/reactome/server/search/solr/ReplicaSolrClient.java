@@ -0,0 +1,377 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.LukeRequest;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.SolrPing;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.Hash;
+import org.apache.solr.common.util.NamedList;
+import org.reactome.server.search.domain.ConnectionPoolStats;
+import org.reactome.server.search.domain.HedgeStats;
+import org.reactome.server.search.domain.ReplicaStats;
+import org.reactome.server.search.util.SearchExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * SolrClient over several read replicas of the same core, one pooled client each.
+ * <p>
+ * Every request goes to one healthy replica: the less loaded of two picked at random (in flight requests times
+ * latency) or, with affinity, the one the parameters of the request hash to in a consistent hash ring, so the same
+ * query lands on the replica whose caches already have it (and only the queries of a replica move when it is
+ * ejected). A replica is ejected after a number of consecutive failures (transport errors and 5xx) and pinged every
+ * pingInterval milliseconds until it answers again. Failed requests are retried once on another replica, unless
+ * they were streaming documents to a callback. The index version (LukeRequest) is always read from the first
+ * healthy replica, so it does not flip between replicas that are still replicating.
+ * <p>
+ * With a HedgePolicy, queries that are not streamed (idempotent reads) run in the executor and, when the first
+ * replica has not answered after the delay of the policy and the budget allows it, are sent to a second replica as
+ * well. The first answer is used and the other request is cancelled, which interrupts its thread (an HTTP/1.1
+ * request blocked reading the socket finishes in the background and its answer is dropped). A failure of one of
+ * them waits for the other, so hedged requests are not retried.
+ */
+class ReplicaSolrClient extends SolrClient {
+
+    private static final long serialVersionUID = 1L;
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    private final static int VIRTUAL_NODES = 128;
+    private final static double LATENCY_WEIGHT = 0.2;
+
+    private final List<Replica> replicas;
+    private final TreeMap<Integer, Replica> ring = new TreeMap<>();
+    private final String core;
+    private final boolean affinity;
+    private final int maxFailures;
+    private final ScheduledExecutorService scheduler;
+    private final HedgePolicy hedge;
+    private final SearchExecutor executor;
+
+    /**
+     * @param hedge    when and how often queries are hedged, null to never hedge
+     * @param executor runs the hedged queries
+     */
+    ReplicaSolrClient(Map<String, SolrClientFactory.PooledClient> clients, String core, boolean affinity, int maxFailures, long pingInterval, HedgePolicy hedge, SearchExecutor executor) {
+        this.replicas = clients.entrySet().stream().map(e -> new Replica(e.getKey(), e.getValue())).collect(Collectors.toList());
+        this.core = core;
+        this.affinity = affinity;
+        this.maxFailures = Math.max(1, maxFailures);
+        this.hedge = hedge;
+        this.executor = executor;
+        for (Replica replica : replicas) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) ring.put(hash(replica.url + "#" + i), replica);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ReplicaPingThread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::pingEjected, pingInterval, pingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // the signature of SolrClient
+    public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+        if (hedge == null || !(request instanceof QueryRequest) || request.getStreamingResponseCallback() != null) {
+            return send(request, collection);
+        }
+        long delay = hedge.requested();
+        if (delay < 0) {
+            long start = System.nanoTime();
+            NamedList<Object> rtn = send(request, collection);
+            hedge.record(millis(start));
+            return rtn;
+        }
+        return hedged(request, collection, delay);
+    }
+
+    private NamedList<Object> send(SolrRequest<?> request, String collection) throws SolrServerException, IOException {
+        Replica replica = choose(request, collection, null);
+        try {
+            return replica.request(request, collection);
+        } catch (SolrServerException | IOException | SolrException e) {
+            if (!isReplicaFailure(e) || request.getStreamingResponseCallback() != null) throw e;
+            Replica other = choose(request, collection, replica);
+            if (other == replica) throw e;
+            logger.warn("Request to " + replica.url + " failed, retrying on " + other.url);
+            return other.request(request, collection);
+        }
+    }
+
+    private NamedList<Object> hedged(SolrRequest<?> request, String collection, long delay) throws SolrServerException, IOException {
+        Replica replica = choose(request, collection, null);
+        long start = System.nanoTime();
+        CompletableFuture<NamedList<Object>> first = executor.supply(() -> replica.request(request, collection));
+        first.whenComplete((rsp, e) -> {
+            if (e == null || first.isCancelled()) hedge.record(millis(start));
+        });
+        try {
+            return first.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // slow answer, hedged below
+        } catch (InterruptedException e) {
+            first.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new SolrServerException(e);
+        } catch (ExecutionException e) {
+            // failed before the delay, retried as any other request
+            Throwable cause = e.getCause();
+            Replica other = choose(request, collection, replica);
+            if (!isReplicaFailure(cause) || other == replica) throw rethrow(cause);
+            logger.warn("Request to " + replica.url + " failed, retrying on " + other.url);
+            return other.request(request, collection);
+        }
+
+        Replica other = choose(request, collection, replica);
+        if (other == replica || !hedge.acquire()) return await(first);
+        CompletableFuture<NamedList<Object>> second = executor.supply(() -> other.request(request, collection));
+        CompletableFuture<NamedList<Object>> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.whenComplete((rsp, e) -> answered(winner, rsp, e, failures));
+        second.whenComplete((rsp, e) -> {
+            if (answered(winner, rsp, e, failures)) hedge.won();
+        });
+        try {
+            return await(winner);
+        } finally {
+            first.cancel(true);
+            second.cancel(true);
+        }
+    }
+
+    /**
+     * Completes the winner with the first answer, or with the error when it is a query error or both failed
+     *
+     * @return true if this answer won
+     */
+    private static boolean answered(CompletableFuture<NamedList<Object>> winner, NamedList<Object> rsp, Throwable e, AtomicInteger failures) {
+        if (e == null) return winner.complete(rsp);
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (!isReplicaFailure(cause) || failures.incrementAndGet() == 2) winner.completeExceptionally(cause);
+        return false;
+    }
+
+    private static NamedList<Object> await(Future<NamedList<Object>> future) throws SolrServerException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new SolrServerException(e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Throws the exceptions request can throw as they are
+     *
+     * @return any other exception wrapped in a SolrServerException
+     */
+    private static SolrServerException rethrow(Throwable e) throws IOException {
+        if (e instanceof SolrServerException) return (SolrServerException) e;
+        if (e instanceof IOException) throw (IOException) e;
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        return new SolrServerException(e);
+    }
+
+    private static long millis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        for (Replica replica : replicas) replica.pooledClient.getClient().close();
+    }
+
+    ConnectionPoolStats getConnectionPoolStats() {
+        String transport = null;
+        int leased = 0, pending = 0, available = 0, max = 0;
+        for (Replica replica : replicas) {
+            ConnectionPoolStats stats = replica.pooledClient.getStats();
+            transport = stats.getTransport();
+            leased += stats.getLeased();
+            pending += stats.getPending();
+            available = sum(available, stats.getAvailable());
+            max = sum(max, stats.getMax());
+        }
+        return new ConnectionPoolStats(transport, leased, pending, available, max);
+    }
+
+    private static int sum(int total, int value) {
+        return total == ConnectionPoolStats.NOT_APPLICABLE || value == ConnectionPoolStats.NOT_APPLICABLE ? ConnectionPoolStats.NOT_APPLICABLE : total + value;
+    }
+
+    List<ReplicaStats> getReplicaStats() {
+        return replicas.stream().map(Replica::getStats).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the hedged requests so far, null when hedging is disabled
+     */
+    HedgeStats getHedgeStats() {
+        return hedge == null ? null : hedge.getStats();
+    }
+
+    /**
+     * @param exclude replica that should not be chosen (if there are others)
+     */
+    private Replica choose(SolrRequest<?> request, String collection, Replica exclude) {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) if (!replica.ejected && replica != exclude) healthy.add(replica);
+        // With every replica ejected, requests keep going to them (they fail anyway) rather than failing here
+        if (healthy.isEmpty()) {
+            for (Replica replica : replicas) if (replica != exclude) healthy.add(replica);
+            if (healthy.isEmpty()) return exclude;
+        }
+        if (request instanceof LukeRequest) return healthy.get(0);
+        if (affinity) return onRing(key(request, collection), healthy);
+        if (healthy.size() == 1) return healthy.get(0);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Replica first = healthy.get(random.nextInt(healthy.size()));
+        Replica second = healthy.get(random.nextInt(healthy.size() - 1));
+        if (second == first) second = healthy.get(healthy.size() - 1);
+        return first.load() <= second.load() ? first : second;
+    }
+
+    /**
+     * @return the first replica in candidates found clockwise from the hash of the key
+     */
+    private Replica onRing(String key, List<Replica> candidates) {
+        int hash = hash(key);
+        for (Replica replica : ring.tailMap(hash).values()) if (candidates.contains(replica)) return replica;
+        for (Replica replica : ring.headMap(hash).values()) if (candidates.contains(replica)) return replica;
+        return candidates.get(0);
+    }
+
+    /**
+     * @return collection, path and the parameters sorted by name, so the same query always has the same key
+     */
+    private static String key(SolrRequest<?> request, String collection) {
+        StringBuilder rtn = new StringBuilder().append(collection).append(request.getPath());
+        SolrParams params = request.getParams();
+        if (params != null) {
+            List<String> names = new ArrayList<>();
+            params.getParameterNamesIterator().forEachRemaining(names::add);
+            Collections.sort(names);
+            for (String name : names) rtn.append('&').append(name).append('=').append(Arrays.toString(params.getParams(name)));
+        }
+        return rtn.toString();
+    }
+
+    private static int hash(String key) {
+        return Hash.murmurhash3_x86_32(key, 0, key.length(), 0);
+    }
+
+    /**
+     * Query errors (4xx) are answers of a healthy replica
+     */
+    private static boolean isReplicaFailure(Throwable e) {
+        return !(e instanceof SolrException) || ((SolrException) e).code() >= 500;
+    }
+
+    /**
+     * Cancelled hedges (and losers) are not failures of their replica
+     */
+    private static boolean isInterruption(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) return true;
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof ClosedByInterruptException) return true;
+            if (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) return true;
+        }
+        return false;
+    }
+
+    private void pingEjected() {
+        for (Replica replica : replicas) {
+            if (!replica.ejected) continue;
+            try {
+                if (new SolrPing().process(replica.pooledClient.getClient(), core).getStatus() == 0) {
+                    replica.readmit();
+                    logger.info("Solr replica " + replica.url + " is back");
+                }
+            } catch (Exception e) {
+                logger.debug("Solr replica " + replica.url + " is still down");
+            }
+        }
+    }
+
+    private class Replica {
+        private final String url;
+        private final SolrClientFactory.PooledClient pooledClient;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final LongAdder ejections = new LongAdder();
+        private volatile double latency = 1;
+        private volatile boolean ejected = false;
+
+        private Replica(String url, SolrClientFactory.PooledClient pooledClient) {
+            this.url = url;
+            this.pooledClient = pooledClient;
+        }
+
+        private NamedList<Object> request(SolrRequest<?> request, String collection) throws SolrServerException, IOException {
+            long start = System.nanoTime();
+            requests.increment();
+            inFlight.incrementAndGet();
+            try {
+                NamedList<Object> rtn = pooledClient.getClient().request(request, collection);
+                succeeded(start);
+                return rtn;
+            } catch (SolrServerException | IOException | SolrException e) {
+                if (!isReplicaFailure(e)) succeeded(start);
+                else if (!isInterruption(e)) failed();
+                throw e;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private double load() {
+            return (inFlight.get() + 1) * latency;
+        }
+
+        private void succeeded(long start) {
+            failures.set(0);
+            double millis = (System.nanoTime() - start) / 1e6;
+            latency = latency + LATENCY_WEIGHT * (millis - latency);
+        }
+
+        private void failed() {
+            errors.increment();
+            if (failures.incrementAndGet() >= maxFailures && !ejected) {
+                ejected = true;
+                ejections.increment();
+                logger.warn("Solr replica " + url + " ejected after " + failures.get() + " consecutive failures");
+            }
+        }
+
+        private void readmit() {
+            failures.set(0);
+            ejected = false;
+        }
+
+        private ReplicaStats getStats() {
+            return new ReplicaStats(url, !ejected, requests.sum(), errors.sum(), inFlight.get(), latency, ejections.sum());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.reactome.server.search.solr;
+
+import org.reactome.server.search.domain.CacheStats;
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Size bounded cache for the results of the most expensive (and repeated) searches.
+ * <p>
+ * Entries are weighted (roughly the number of documents or facet values they hold) and the least recently used
+ * are evicted once search.cache.maxWeight is exceeded. An entry is fresh for search.cache.ttl milliseconds. After
+ * that, and for search.cache.staleWhileRevalidate milliseconds more, it is still served while a background refresh
+ * takes place. Expired entries are also served when Solr cannot be reached. The whole cache is dropped when the
+ * index version changes.
+ */
+@Component
+class ResultCache {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    interface Loader<V> {
+        V load() throws SolrSearcherException;
+    }
+
+    private static class CacheEntry {
+        private final Object value;
+        private final int weight;
+        private final long loaded;
+        private final long generation;
+        private volatile boolean refreshing = false;
+
+        CacheEntry(Object value, int weight, long generation) {
+            this.value = value;
+            this.weight = weight;
+            this.loaded = System.currentTimeMillis();
+            this.generation = generation;
+        }
+    }
+
+    private final boolean enabled;
+    private final long maxWeight;
+    private final long ttl;
+    private final long staleWhileRevalidate;
+    private final SearchExecutor executor;
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long weight = 0;
+    private volatile long generation = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    ResultCache(@Value("${search.cache.enabled:false}") boolean enabled,
+                @Value("${search.cache.maxWeight:200000}") long maxWeight,
+                @Value("${search.cache.ttl:300000}") long ttl,
+                @Value("${search.cache.staleWhileRevalidate:600000}") long staleWhileRevalidate,
+                SearchExecutor executor,
+                IndexVersionMonitor indexVersionMonitor) {
+        this.enabled = enabled;
+        this.maxWeight = maxWeight;
+        this.ttl = ttl;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.executor = executor;
+        if (enabled) indexVersionMonitor.onIndexChange(this::invalidateAll);
+    }
+
+    /**
+     * Returns the cached value for the given key or loads (and caches) it
+     *
+     * @param key     canonical key of the request, including the kind of result
+     * @param loader  retrieves the value from Solr
+     * @param weigher weight of a value, values weighing 0 are not cached
+     */
+    <V> V get(String key, Loader<V> loader, ToIntFunction<V> weigher) throws SolrSearcherException {
+        if (!enabled) return loader.load();
+        CacheEntry entry = lookup(key);
+        if (entry != null) {
+            long age = System.currentTimeMillis() - entry.loaded;
+            if (age < ttl) {
+                hits.increment();
+                return value(entry);
+            }
+            if (age < ttl + staleWhileRevalidate) {
+                staleHits.increment();
+                refresh(key, entry, loader, weigher);
+                return value(entry);
+            }
+        }
+        misses.increment();
+        long generation = this.generation;
+        try {
+            V value = loader.load();
+            put(key, value, weigher, generation);
+            return value;
+        } catch (SolrSearcherException e) {
+            if (entry == null) throw e;
+            logger.warn("Solr is unreachable, serving an expired result for " + key);
+            staleHits.increment();
+            return value(entry);
+        }
+    }
+
+    /**
+     * Asynchronous version of get. Only fresh entries are served from the cache, anything else is loaded.
+     */
+    <V> CompletableFuture<V> getAsync(String key, Supplier<CompletableFuture<V>> loader, ToIntFunction<V> weigher) {
+        if (!enabled) return loader.get();
+        CacheEntry entry = lookup(key);
+        if (entry != null && System.currentTimeMillis() - entry.loaded < ttl) {
+            hits.increment();
+            return CompletableFuture.completedFuture(value(entry));
+        }
+        misses.increment();
+        long generation = this.generation;
+        CompletableFuture<V> rtn = loader.get();
+        rtn.thenAccept(value -> put(key, value, weigher, generation));
+        return rtn;
+    }
+
+    void invalidateAll() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+            weight = 0;
+        }
+        logger.info("Search result cache invalidated");
+    }
+
+    CacheStats getStats() {
+        synchronized (entries) {
+            return new CacheStats(hits.sum(), staleHits.sum(), misses.sum(), evictions.sum(), entries.size(), weight);
+        }
+    }
+
+    private CacheEntry lookup(String key) {
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            return entry != null && entry.generation == generation ? entry : null;
+        }
+    }
+
+    private <V> void refresh(String key, CacheEntry entry, Loader<V> loader, ToIntFunction<V> weigher) {
+        if (entry.refreshing) return;
+        entry.refreshing = true;
+        long generation = this.generation;
+        executor.execute(() -> {
+            try {
+                put(key, loader.load(), weigher, generation);
+            } catch (SolrSearcherException | RuntimeException e) {
+                entry.refreshing = false; // the stale entry stays and will be retried on the next hit
+            }
+        });
+    }
+
+    private <V> void put(String key, V value, ToIntFunction<V> weigher, long generation) {
+        if (value == null) return;
+        int valueWeight = Math.max(0, weigher.applyAsInt(value));
+        if (valueWeight == 0 || valueWeight > maxWeight) return;
+        synchronized (entries) {
+            if (generation != this.generation) return; // loaded from an index version that is no longer there
+            CacheEntry previous = entries.put(key, new CacheEntry(value, valueWeight, generation));
+            weight += valueWeight - (previous == null ? 0 : previous.weight);
+            Iterator<Map.Entry<String, CacheEntry>> it = entries.entrySet().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                weight -= it.next().getValue().weight;
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V value(CacheEntry entry) {
+        return (V) entry.value;
+    }
+}
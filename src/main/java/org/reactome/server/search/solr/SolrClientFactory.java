@@ -0,0 +1,249 @@
+package org.reactome.server.search.solr;
+
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.apache.solr.client.solrj.impl.HttpListenerFactory;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Result;
+import org.reactome.server.search.domain.ConnectionPoolStats;
+import org.reactome.server.search.domain.HedgeStats;
+import org.reactome.server.search.domain.ReplicaStats;
+import org.reactome.server.search.util.PreemptiveAuthInterceptor;
+import org.reactome.server.search.util.PreemptiveAuthListenerFactory;
+import org.reactome.server.search.util.SearchExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the pooled clients used to talk to Solr.
+ * <p>
+ * By default the HTTP/1.1 HttpSolrClient is used, backed by a pooling connection manager sized by solr.pool.*.
+ * Setting solr.http2 to true switches to Http2SolrClient, where requests to the same host are multiplexed over a
+ * small number of connections (avoiding head-of-line blocking on the pool). In both cases, when solr.user and
+ * solr.password are set, basic authentication is sent preemptively.
+ * <p>
+ * solr.host can list several replicas of the core separated by commas, they are balanced by a ReplicaSolrClient
+ * with one pool per replica (solr.replicas.* configure the routing, ejection and re-admission). When solr.hedge.enabled
+ * is true, slow queries are also sent to a second replica (solr.hedge.* configure the delay and the budget).
+ */
+@Component
+class SolrClientFactory {
+
+    static final String HTTP1 = "HTTP/1.1";
+    static final String HTTP2 = "HTTP/2";
+
+    private final String user;
+    private final String password;
+    private final boolean http2;
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final int connectTimeout;
+    private final int socketTimeout;
+    private final long keepAlive;
+    private final boolean affinity;
+    private final int maxFailures;
+    private final long pingInterval;
+    private final boolean hedge;
+    private final double hedgePercentile;
+    private final double hedgeBudget;
+    private final long hedgeMinDelay;
+    private final SearchExecutor executor;
+
+    SolrClientFactory(@Value("${solr.user}") String user,
+                      @Value("${solr.password}") String password,
+                      @Value("${solr.http2:false}") boolean http2,
+                      @Value("${solr.pool.maxConnections:128}") int maxConnections,
+                      @Value("${solr.pool.maxConnectionsPerRoute:64}") int maxConnectionsPerRoute,
+                      @Value("${solr.timeout.connect:5000}") int connectTimeout,
+                      @Value("${solr.timeout.socket:60000}") int socketTimeout,
+                      @Value("${solr.pool.keepAlive:30000}") long keepAlive,
+                      @Value("${solr.replicas.affinity:false}") boolean affinity,
+                      @Value("${solr.replicas.maxFailures:3}") int maxFailures,
+                      @Value("${solr.replicas.ping:5000}") long pingInterval,
+                      @Value("${solr.hedge.enabled:false}") boolean hedge,
+                      @Value("${solr.hedge.percentile:95}") double hedgePercentile,
+                      @Value("${solr.hedge.budget:0.05}") double hedgeBudget,
+                      @Value("${solr.hedge.minDelay:10}") long hedgeMinDelay,
+                      SearchExecutor executor) {
+        this.user = user;
+        this.password = password;
+        this.http2 = http2;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.connectTimeout = connectTimeout;
+        this.socketTimeout = socketTimeout;
+        this.keepAlive = keepAlive;
+        this.affinity = affinity;
+        this.maxFailures = maxFailures;
+        this.pingInterval = pingInterval;
+        this.hedge = hedge;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeBudget = hedgeBudget;
+        this.hedgeMinDelay = hedgeMinDelay;
+        this.executor = executor;
+    }
+
+    /**
+     * @param urls solr URL or comma separated URLs of replicas
+     * @param core core used to ping the ejected replicas
+     * @return a new client for the given url (or replicas) together with access to its statistics
+     */
+    PooledClient create(String urls, String core) {
+        List<String> replicas = Arrays.stream(urls.split(",")).map(String::trim).filter(url -> !url.isEmpty()).distinct().collect(Collectors.toList());
+        if (replicas.size() <= 1) return create(urls.trim());
+        Map<String, PooledClient> clients = new LinkedHashMap<>();
+        for (String url : replicas) clients.put(url, create(url));
+        HedgePolicy hedgePolicy = hedge ? new HedgePolicy(hedgePercentile, hedgeBudget, hedgeMinDelay) : null;
+        ReplicaSolrClient client = new ReplicaSolrClient(clients, core, affinity, maxFailures, pingInterval, hedgePolicy, executor);
+        return new PooledClient(client, client::getConnectionPoolStats, client::getReplicaStats, client::getHedgeStats);
+    }
+
+    /**
+     * @param url solr URL
+     * @return a new client for the given url together with access to its connection pool statistics
+     */
+    PooledClient create(String url) {
+        return http2 ? createHttp2(url) : createHttp1(url);
+    }
+
+    private PooledClient createHttp1(String url) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy((response, context) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+                })
+                .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS);
+        if (hasCredentials()) {
+            CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
+            builder.addInterceptorFirst(new PreemptiveAuthInterceptor()).setDefaultCredentialsProvider(credentialsProvider);
+        }
+
+        SolrClient client = new HttpSolrClient.Builder(url)
+                .withHttpClient(builder.build())
+                .withConnectionTimeout(connectTimeout)
+                .withSocketTimeout(socketTimeout)
+                .build();
+        return new PooledClient(client, () -> {
+            PoolStats stats = connectionManager.getTotalStats();
+            return new ConnectionPoolStats(HTTP1, stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+        });
+    }
+
+    private PooledClient createHttp2(String url) {
+        Http2SolrClient client = new Http2SolrClient.Builder(url)
+                .maxConnectionsPerHost(maxConnectionsPerRoute)
+                .connectionTimeout(connectTimeout)
+                .idleTimeout(socketTimeout)
+                .build();
+        if (hasCredentials()) {
+            client.addListenerFactory(new PreemptiveAuthListenerFactory(user, password));
+        }
+        RequestTracker tracker = new RequestTracker();
+        client.addListenerFactory(tracker);
+        return new PooledClient(client, () -> {
+            // requests are counted rather than connections, so there is no meaningful available or max
+            return new ConnectionPoolStats(HTTP2, tracker.active.get(), tracker.queued.get(), ConnectionPoolStats.NOT_APPLICABLE, ConnectionPoolStats.NOT_APPLICABLE);
+        });
+    }
+
+    private boolean hasCredentials() {
+        return user != null && !user.isEmpty() && password != null && !password.isEmpty();
+    }
+
+    /**
+     * A SolrClient and the statistics of the pool (and replicas) behind it
+     */
+    static class PooledClient {
+        private final SolrClient client;
+        private final Supplier<ConnectionPoolStats> stats;
+        private final Supplier<List<ReplicaStats>> replicaStats;
+        private final Supplier<HedgeStats> hedgeStats;
+
+        PooledClient(SolrClient client, Supplier<ConnectionPoolStats> stats) {
+            this(client, stats, Collections::emptyList, () -> null);
+        }
+
+        PooledClient(SolrClient client, Supplier<ConnectionPoolStats> stats, Supplier<List<ReplicaStats>> replicaStats, Supplier<HedgeStats> hedgeStats) {
+            this.client = client;
+            this.stats = stats;
+            this.replicaStats = replicaStats;
+            this.hedgeStats = hedgeStats;
+        }
+
+        SolrClient getClient() {
+            return client;
+        }
+
+        ConnectionPoolStats getStats() {
+            return stats.get();
+        }
+
+        /**
+         * @return the state of each replica, empty for a single URL
+         */
+        List<ReplicaStats> getReplicaStats() {
+            return replicaStats.get();
+        }
+
+        /**
+         * @return the hedged requests, null for a single URL or when hedging is disabled
+         */
+        HedgeStats getHedgeStats() {
+            return hedgeStats.get();
+        }
+    }
+
+    /**
+     * Keeps count of the HTTP/2 requests that are queued (waiting for a connection or stream) and in flight
+     */
+    private static class RequestTracker implements HttpListenerFactory {
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+
+        @Override
+        public RequestResponseListener get() {
+            return new RequestResponseListener() {
+                private volatile boolean begun = false;
+
+                @Override
+                public void onQueued(Request request) {
+                    queued.incrementAndGet();
+                }
+
+                @Override
+                public void onBegin(Request request) {
+                    begun = true;
+                    queued.decrementAndGet();
+                    active.incrementAndGet();
+                }
+
+                @Override
+                public void onComplete(Result result) {
+                    if (begun) active.decrementAndGet();
+                    else queued.decrementAndGet();
+                }
+            };
+        }
+    }
+}
@@ -2,17 +2,22 @@ package org.reactome.server.search.solr;
 
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.response.*;
+import org.apache.solr.client.solrj.response.json.BucketBasedJsonFacet;
+import org.apache.solr.client.solrj.response.json.NestableJsonFacet;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.reactome.server.search.domain.*;
 import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.function.BiConsumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -116,10 +121,38 @@ public class SolrConverter {
         private static final Map<String, Field> nameToField = Arrays.stream(Field.values()).collect(Collectors.toMap(f -> f.name, f -> f));
     }
 
-    private final SolrCore solrCore;
+    private final static String FACETS_CACHE = "facets:";
+    private final static String CORRECTED_FACETS_CACHE = "facets:corrected:";
+    private final static String GROUPED_ENTRIES_CACHE = "grouped:";
+    private final static String FACETED_ENTRIES_CACHE = "faceted:";
+    private final static String FIREWORKS_CACHE = "fireworks:";
+    private final static int FLAGGING_ROWS = 1000;
 
-    public SolrConverter(@Autowired SolrCore solrCore) {
+    private final SolrCore solrCore;
+    private final ResultCache cache;
+    private final LocalSuggester localSuggester;
+    private final TargetDictionary targetDictionary;
+    private final BatchRetriever batchRetriever;
+    private final OccurrenceIndex occurrenceIndex;
+    private final FireworksFlaggingIndex fireworksFlaggingIndex;
+    private final MultiSelectFacets multiSelectFacets;
+
+    public SolrConverter(@Autowired SolrCore solrCore,
+                         @Autowired ResultCache cache,
+                         @Autowired LocalSuggester localSuggester,
+                         @Autowired TargetDictionary targetDictionary,
+                         @Autowired BatchRetriever batchRetriever,
+                         @Autowired OccurrenceIndex occurrenceIndex,
+                         @Autowired FireworksFlaggingIndex fireworksFlaggingIndex,
+                         @Autowired MultiSelectFacets multiSelectFacets) {
         this.solrCore = solrCore;
+        this.cache = cache;
+        this.localSuggester = localSuggester;
+        this.targetDictionary = targetDictionary;
+        this.batchRetriever = batchRetriever;
+        this.occurrenceIndex = occurrenceIndex;
+        this.fireworksFlaggingIndex = fireworksFlaggingIndex;
+        this.multiSelectFacets = multiSelectFacets;
     }
 
     /**
@@ -131,6 +164,48 @@ public class SolrConverter {
         return solrCore.ping();
     }
 
+    /**
+     * @return the current state of the connection pool used to query Solr
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return solrCore.getConnectionPoolStats();
+    }
+
+    /**
+     * @return the state of each Solr replica, empty when solr.host is a single URL
+     */
+    public List<ReplicaStats> getReplicaStats() {
+        return solrCore.getReplicaStats();
+    }
+
+    /**
+     * @return the requests hedged to a second Solr replica, null when hedging is disabled or there are no replicas
+     */
+    public HedgeStats getHedgeStats() {
+        return solrCore.getHedgeStats();
+    }
+
+    /**
+     * @return concurrent requests and rejections of each bulkhead, empty when they are disabled
+     */
+    public List<BulkheadStats> getBulkheadStats() {
+        return solrCore.getBulkheadStats();
+    }
+
+    /**
+     * @return state, transitions and rejections of the Solr circuit breaker, null when it is disabled
+     */
+    public CircuitBreakerStats getCircuitBreakerStats() {
+        return solrCore.getCircuitBreakerStats();
+    }
+
+    /**
+     * @return hit, miss and eviction counters of the search result cache
+     */
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
     /**
      * Method for autocompletion
      *
@@ -140,6 +215,9 @@ public class SolrConverter {
     public List<String> getAutocompleteSuggestions(String query) throws SolrSearcherException {
         List<String> aux = new LinkedList<>();
         if (query != null && !query.isEmpty()) {
+            // Terms in the local dictionary come from the index, so there is no need to check they have results
+            List<String> local = localSuggester.lookup(query);
+            if (local != null) return local;
             aux = suggestionHelper(solrCore.getAutocompleteSuggestions(query));
         }
 
@@ -163,10 +241,12 @@ public class SolrConverter {
 
     private List<String> getSuggestions(List<String> aux) throws SolrSearcherException {
         List<String> rtn = new LinkedList<>();
-        if (aux != null) {
-            for (String q : aux) {
-                if (solrCore.existsQuery(q)) {
-                    rtn.add(q);
+        if (aux != null && !aux.isEmpty()) {
+            // All the collations are checked in one request, so the cost does not grow with the number of suggestions
+            List<Boolean> exists = solrCore.existsQueries(aux);
+            for (int i = 0; i < aux.size(); i++) {
+                if (exists.get(i)) {
+                    rtn.add(aux.get(i));
                 }
             }
         }
@@ -189,24 +269,93 @@ public class SolrConverter {
      * @return FacetMapping
      */
     public FacetMapping getFacetingInformation(Query queryObject) throws SolrSearcherException {
-        return getFacetMap(solrCore.getFacetingInformation(queryObject), queryObject);
+        return getFacetingInformation(queryObject, false);
+    }
+
+    public CompletableFuture<FacetMapping> getFacetingInformationAsync(Query queryObject) {
+        if (multiSelectFacets.isEnabled()) return getMultiSelectFacetsAsync(queryObject);
+        return cache.getAsync(FACETS_CACHE + queryObject.getCanonicalKey(),
+                () -> SearchExecutor.thenApply(solrCore.getFacetingInformationAsync(queryObject), response -> getFacetMap(response, queryObject)),
+                SolrConverter::weight);
+    }
+
+    /**
+     * Same as getFacetingInformation, but when isCorrectingFacets is true and correct is requested, the selected
+     * facets that contradict the other filters are left out of the FacetMapping and the counts are the ones
+     * without them (from a second request, only sent when a whole dimension is dropped)
+     *
+     * @param queryObject QueryObject (query, types, species, keywords, compartments)
+     * @param correct     leave out the contradicting selected facets
+     * @return FacetMapping
+     */
+    public FacetMapping getFacetingInformation(Query queryObject, boolean correct) throws SolrSearcherException {
+        if (multiSelectFacets.isEnabled()) {
+            return cache.get(facetsCacheKey(queryObject, correct), () -> {
+                QueryResponse response = solrCore.getJsonFacetingInformation(queryObject, multiSelectFacets.request());
+                String correction = correct ? multiSelectFacets.correction(response, queryObject) : null;
+                if (correction == null) return multiSelectFacets.toFacetMapping(response, queryObject, correct);
+                return multiSelectFacets.toFacetMapping(response, solrCore.getJsonFacetingInformation(queryObject, correction), queryObject);
+            }, SolrConverter::weight);
+        }
+        return cache.get(FACETS_CACHE + queryObject.getCanonicalKey(),
+                () -> getFacetMap(solrCore.getFacetingInformation(queryObject), queryObject),
+                SolrConverter::weight);
+    }
+
+    /**
+     * @return true if getFacetingInformation(query, true) corrects the contradicting facets itself
+     */
+    public boolean isCorrectingFacets() {
+        return multiSelectFacets.isEnabled();
+    }
+
+    private CompletableFuture<FacetMapping> getMultiSelectFacetsAsync(Query queryObject) {
+        return cache.getAsync(facetsCacheKey(queryObject, false),
+                () -> SearchExecutor.thenApply(solrCore.getJsonFacetingInformationAsync(queryObject, multiSelectFacets.request()),
+                        response -> multiSelectFacets.toFacetMapping(response, queryObject, false)),
+                SolrConverter::weight);
+    }
+
+    private static String facetsCacheKey(Query queryObject, boolean correct) {
+        return (correct ? CORRECTED_FACETS_CACHE : FACETS_CACHE) + queryObject.getCanonicalKey();
     }
 
     public FireworksResult getFireworksResult(Query queryObject) throws SolrSearcherException {
-        QueryResponse response = solrCore.getFireworksResult(queryObject);
-        if (response != null && queryObject != null) {
-            List<SolrDocument> solrDocuments = response.getResults();
-            List<Entry> entries = new ArrayList<>();
-            for (SolrDocument solrDocument : solrDocuments) {
-                Entry entry = buildEntry(solrDocument, null);
-                if (solrDocument.containsKey(FIREWORKS_SPECIES.name)) {
-                    Collection<Object> fireworksSpecies = solrDocument.getFieldValues(FIREWORKS_SPECIES.name);
-                    entry.setFireworksSpecies(fireworksSpecies.stream().map(Object::toString).collect(Collectors.toList()));
-                }
+        return cache.get(FIREWORKS_CACHE + queryObject.getCanonicalKey(),
+                () -> {
+                    List<Entry> entries = new ArrayList<>();
+                    return parseFireworksResult(solrCore.getFireworksResult(queryObject, fireworksCallback(entries)), entries, queryObject);
+                },
+                SolrConverter::weight);
+    }
 
-                entries.add(entry);
+    public CompletableFuture<FireworksResult> getFireworksResultAsync(Query queryObject) {
+        return cache.getAsync(FIREWORKS_CACHE + queryObject.getCanonicalKey(),
+                () -> {
+                    List<Entry> entries = new ArrayList<>();
+                    return SearchExecutor.thenApply(solrCore.getFireworksResultAsync(queryObject, fireworksCallback(entries)), response -> parseFireworksResult(response, entries, queryObject));
+                },
+                SolrConverter::weight);
+    }
+
+    /**
+     * @param entries receives the entries as the documents are streamed
+     */
+    private EntryCallback fireworksCallback(List<Entry> entries) {
+        return new EntryCallback(EntryDecoder.ALL, (solrDocument, entry) -> {
+            if (solrDocument.containsKey(FIREWORKS_SPECIES.name)) {
+                Collection<Object> fireworksSpecies = solrDocument.getFieldValues(FIREWORKS_SPECIES.name);
+                entry.setFireworksSpecies(fireworksSpecies.stream().map(Object::toString).collect(Collectors.toList()));
             }
+            entries.add(entry);
+        });
+    }
 
+    /**
+     * @param entries the entries streamed from the response
+     */
+    private FireworksResult parseFireworksResult(QueryResponse response, List<Entry> entries, Query queryObject) {
+        if (response != null && queryObject != null) {
             List<FacetContainer> facets = new ArrayList<>();
             for (FacetField facetField : response.getFacetFields()) {
                 //only the TYPES facets is used in the handler, so no need to check the others
@@ -229,14 +378,76 @@ public class SolrConverter {
      * - Retrieve list of subpathways (getDiagramEncapsulatedResult)
      */
     public DiagramResult getDiagrams(Query queryObject) throws SolrSearcherException {
-        QueryResponse response = solrCore.getDiagrams(queryObject);
-        if (response != null && queryObject != null) {
-            List<SolrDocument> solrDocuments = response.getResults();
-            List<Entry> entries = new ArrayList<>();
-            for (SolrDocument solrDocument : solrDocuments) {
-                entries.add(buildEntry(solrDocument, null));
-            }
+        List<Entry> entries = new ArrayList<>();
+        return parseDiagramResult(solrCore.getDiagrams(queryObject, diagramsCallback(entries)), entries, queryObject);
+    }
+
+    public CompletableFuture<DiagramResult> getDiagramsAsync(Query queryObject) {
+        List<Entry> entries = new ArrayList<>();
+        return SearchExecutor.thenApply(solrCore.getDiagramsAsync(queryObject, diagramsCallback(entries)), response -> parseDiagramResult(response, entries, queryObject));
+    }
+
+    /**
+     * Same counts and type facets as getDiagrams and getFireworksResult with rows=0, including the fallback to
+     * Scope.BOTH (which is set in the queryObject) when the fireworks find nothing, from two concurrent requests
+     * (one to the handler of each)
+     *
+     * @param queryObject QueryObject (query, species, types, scope, filterQuery as the diagram)
+     * @return DiagramSearchSummary without entries
+     */
+    public DiagramSearchSummary getDiagramSearchSummary(Query queryObject) throws SolrSearcherException {
+        CompletableFuture<QueryResponse> diagramResponse = solrCore.getDiagramSearchSummaryAsync(queryObject, true);
+        NestableJsonFacet fireworksFacets;
+        NestableJsonFacet diagramFacets;
+        try {
+            fireworksFacets = solrCore.getDiagramSearchSummary(queryObject, false).getJsonFacetingResponse();
+            diagramFacets = await(diagramResponse).getJsonFacetingResponse();
+        } finally {
+            diagramResponse.cancel(true); // no effect once completed, stops it when the fireworks request failed
+        }
+        String prefix = "";
+        if (getCount(fireworksFacets, SolrCore.summaryFacetName(prefix, "found")) == 0) {
+            queryObject.setScope(Query.Scope.BOTH);
+            if (fireworksFacets != null && fireworksFacets.getQueryFacet(SolrCore.summaryFacetName("both", "found")) != null) prefix = "both";
+        }
+        DiagramResult diagrams = new DiagramResult(new ArrayList<>(), getFacets(diagramFacets, SolrCore.summaryFacetName(prefix, "types")), getCount(diagramFacets, SolrCore.summaryFacetName(prefix, "found")));
+        FireworksResult fireworks = new FireworksResult(new ArrayList<>(), getFacets(fireworksFacets, SolrCore.summaryFacetName(prefix, "types")), getCount(fireworksFacets, SolrCore.summaryFacetName(prefix, "found")));
+        return new DiagramSearchSummary(diagrams, fireworks);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws SolrSearcherException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrSearcherException("Interrupted while waiting for the diagram search summary", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolrSearcherException) throw (SolrSearcherException) e.getCause();
+            throw new SolrSearcherException("The diagram search summary could not be retrieved", e.getCause());
+        }
+    }
+
+    private static long getCount(NestableJsonFacet facets, String name) {
+        // Solr leaves the facets out when nothing matches
+        NestableJsonFacet facet = facets == null ? null : facets.getQueryFacet(name);
+        return facet == null ? 0 : facet.getCount();
+    }
 
+    private static List<FacetContainer> getFacets(NestableJsonFacet facets, String name) {
+        BucketBasedJsonFacet facet = facets == null ? null : facets.getBucketBasedFacets(name);
+        if (facet == null) return new ArrayList<>();
+        return facet.getBuckets().stream().map(bucket -> new FacetContainer(bucket.getVal().toString(), bucket.getCount())).collect(Collectors.toList());
+    }
+
+    private EntryCallback diagramsCallback(List<Entry> entries) {
+        return new EntryCallback(EntryDecoder.ALL, (solrDocument, entry) -> entries.add(entry));
+    }
+
+    /**
+     * @param entries the entries streamed from the response
+     */
+    private DiagramResult parseDiagramResult(QueryResponse response, List<Entry> entries, Query queryObject) {
+        if (response != null && queryObject != null) {
             List<FacetContainer> facets = new ArrayList<>();
             if (response.getFacetFields() != null) {
                 for (FacetField facetField : response.getFacetFields()) {
@@ -253,20 +464,26 @@ public class SolrConverter {
     /**
      * This is stored in the subpathways multivalue field having diagram:isInDiagram:[list of subpathways]
      *
+     * Answered from the occurrence graph when it is loaded and contains the element.
+     *
      * @param queryObject - has the stId of the element we are search and the diagram to filter
      */
     public DiagramOccurrencesResult getDiagramOccurrencesResult(Query queryObject) throws SolrSearcherException {
+        OccurrenceGraph graph = occurrenceIndex.getGraph();
+        if (graph != null && queryObject != null && queryObject.getFilterQuery() != null && graph.contains(queryObject.getQuery())) {
+            return graph.getDiagramOccurrences(queryObject.getQuery(), queryObject.getFilterQuery(), queryObject.getIncludeInteractors(), queryObject.getScope());
+        }
         QueryResponse response = solrCore.getDiagramOccurrences(queryObject);
         if (response != null && queryObject != null) {
             String searchingFilter = queryObject.getFilterQuery();
+            OccurrenceCursor cursor = new OccurrenceCursor();
             List<SolrDocument> solrDocuments = response.getResults();
             for (SolrDocument solrDocument : solrDocuments) {
-                if (solrDocument.containsKey(queryObject.getOccurrencesFieldName())) {
-                    List<String> rawOccurrences = solrDocument.getFieldValues(queryObject.getOccurrencesFieldName()).stream().map(Object::toString).collect(Collectors.toList());
-                    for (String rawOccurrence : rawOccurrences) {
-                        if (rawOccurrence.startsWith(searchingFilter)) {
-                            return extractRawOccurrence(rawOccurrence, Optional.empty());
-                        }
+                Collection<Object> rawOccurrences = solrDocument.getFieldValues(queryObject.getOccurrencesFieldName());
+                if (rawOccurrences == null) continue;
+                for (Object rawOccurrence : rawOccurrences) {
+                    if (cursor.reset(rawOccurrence.toString()) && cursor.startsWith(searchingFilter)) {
+                        return extractRawOccurrence(cursor, null);
                     }
                 }
             }
@@ -277,46 +494,75 @@ public class SolrConverter {
     /**
      * This is stored in the subpathways multivalue field having diagram:isInDiagram:[list of subpathways]
      *
+     * Every document matching the term in the diagram is taken into account (paged with a cursor).
+     *
      * @param queryObject - has the term we are searching to flag the corresponding element and the diagram to filter
      */
     public List<DiagramOccurrencesResult> getDiagramFlagging(Query queryObject) throws SolrSearcherException {
         List<DiagramOccurrencesResult> rtn = new ArrayList<>();
-        QueryResponse response = solrCore.getDiagramFlagging(queryObject);
-        if (response != null && queryObject != null) {
-            String targetedDiagram = queryObject.getFilterQuery();
-            List<SolrDocument> solrDocuments = response.getResults();
-            for (SolrDocument solrDocument : solrDocuments) {
-                if (solrDocument.containsKey(queryObject.getOccurrencesFieldName())) {
-                    List<String> rawOccurrences = solrDocument.getFieldValues(queryObject.getOccurrencesFieldName()).stream().map(Object::toString).collect(Collectors.toList());
-                    for (String rawOccurrence : rawOccurrences) {
-                        if (rawOccurrence.startsWith(targetedDiagram)) {
-                            rtn.add(extractRawOccurrence(rawOccurrence, Optional.of(solrDocument)));
-                        }
+        if (queryObject == null) return rtn;
+        String targetedDiagram = queryObject.getFilterQuery();
+        OccurrenceCursor cursor = new OccurrenceCursor();
+        try (DocumentCursor solrDocuments = solrCore.getDiagramFlagging(queryObject, FLAGGING_ROWS)) {
+            while (solrDocuments.hasNext()) {
+                SolrDocument solrDocument = solrDocuments.next();
+                Collection<Object> rawOccurrences = solrDocument.getFieldValues(queryObject.getOccurrencesFieldName());
+                if (rawOccurrences == null) continue;
+                for (Object rawOccurrence : rawOccurrences) {
+                    // there is one value per diagram
+                    if (cursor.reset(rawOccurrence.toString()) && cursor.isDiagram(targetedDiagram)) {
+                        rtn.add(extractRawOccurrence(cursor, solrDocument));
+                        break;
                     }
                 }
             }
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SolrSearcherException) throw (SolrSearcherException) e.getCause();
+            throw e;
         }
         return rtn;
     }
 
+    /**
+     * The pathways are taken from the occurrence graph when it is loaded and contains the entity. In that case, if
+     * only ST_ID is requested and there is no species, the entries are built without querying Solr at all.
+     */
     @NonNull
     public List<Entry> getContainingPathwaysOf(Long dbId, Boolean includeInteractors, Boolean directlyInDiagram, @Nullable String species, @Nullable List<Field> fields) throws SolrSearcherException {
         if (dbId == null) return List.of();
-        String occurrenceField = includeInteractors ? OCCURRENCES_INTERACTOR.name : OCCURRENCES.name;
-        SolrDocument entityDocument = this.solrCore.retrieveFromDbId(dbId, List.of(occurrenceField));
-        if (entityDocument == null || !entityDocument.containsKey(occurrenceField)) return List.of();
-        Stream<DiagramOccurrencesResult> occurrencesStream = entityDocument.getFieldValues(occurrenceField).stream()
-                .map(Object::toString)
-                .map(raw -> extractRawOccurrence(raw, Optional.empty()));
-
-        if (directlyInDiagram) occurrencesStream = occurrencesStream.filter(DiagramOccurrencesResult::getInDiagram);
-        List<String> occurrencesPathwayStIds = occurrencesStream.map(DiagramOccurrencesResult::getDiagramEntity).collect(Collectors.toList());
+        OccurrenceGraph graph = occurrenceIndex.getGraph();
+        List<String> occurrencesPathwayStIds = graph != null ? graph.getDiagrams(dbId, includeInteractors, directlyInDiagram) : null;
+        if (occurrencesPathwayStIds == null) {
+            occurrencesPathwayStIds = getContainingPathwayStIds(dbId, includeInteractors, directlyInDiagram);
+        } else if (species == null && fields != null && fields.equals(List.of(ST_ID))) {
+            EntryDecoder decoder = EntryDecoder.forFields(fields);
+            return occurrencesPathwayStIds.stream().map(stId -> {
+                SolrDocument document = new SolrDocument();
+                document.setField(ST_ID.name, stId);
+                return decoder.decode(document, null);
+            }).collect(Collectors.toList());
+        }
 
         return species != null
                 ? batchRetrieveFromStIds(occurrencesPathwayStIds, fields, SPECIES.name + ":" + species)
                 : batchRetrieveFromStIds(occurrencesPathwayStIds, fields);
     }
 
+    private List<String> getContainingPathwayStIds(Long dbId, Boolean includeInteractors, Boolean directlyInDiagram) throws SolrSearcherException {
+        String occurrenceField = includeInteractors ? OCCURRENCES_INTERACTOR.name : OCCURRENCES.name;
+        SolrDocument entityDocument = this.solrCore.retrieveFromDbId(dbId, List.of(occurrenceField));
+        if (entityDocument == null || !entityDocument.containsKey(occurrenceField)) return List.of();
+        Collection<Object> rawOccurrences = entityDocument.getFieldValues(occurrenceField);
+        OccurrenceCursor cursor = new OccurrenceCursor();
+        List<String> occurrencesPathwayStIds = new ArrayList<>(rawOccurrences.size());
+        for (Object rawOccurrence : rawOccurrences) {
+            if (!cursor.reset(rawOccurrence.toString())) continue;
+            if (directlyInDiagram && !cursor.inDiagram()) continue;
+            occurrencesPathwayStIds.add(cursor.diagram());
+        }
+        return occurrencesPathwayStIds;
+    }
+
     @NonNull
     public List<Entry> getPhysicalEntitiesOfReference(String stId, @Nullable List<Field> fields) throws SolrSearcherException {
         if (stId == null) return List.of();
@@ -339,50 +585,92 @@ public class SolrConverter {
     @NonNull
     public List<Entry> batchRetrieveFromStIds(List<String> stIds, @Nullable List<Field> fields, String... filterQueries) throws SolrSearcherException {
         if (stIds == null) return List.of();
+        List<Entry> rtn = new ArrayList<>(stIds.size());
+        batchRetrieveFromStIds(stIds, fields, rtn::add, filterQueries);
+        return rtn;
+    }
+
+    /**
+     * Retrieves the entries in chunks (see BatchRetriever), handing them to the consumer in the order of stIds
+     */
+    public void batchRetrieveFromStIds(List<String> stIds, @Nullable List<Field> fields, Consumer<Entry> consumer, String... filterQueries) throws SolrSearcherException {
+        if (stIds == null) return;
         if (fields == null) fields = List.of();
         List<String> internalFields = fields.stream().map(Field::getName).collect(Collectors.toList());
-        QueryResponse response = solrCore.batchRetrieveFromStableIds(stIds, internalFields, filterQueries);
-        if (response != null) {
-            return response.getResults().stream().map(solrDocument -> buildEntry(solrDocument, null)).collect(Collectors.toList());
-        }
-        return List.of();
+        // stId is needed to sort the documents in the order of stIds, the decoder leaves it out if it was not requested
+        if (!internalFields.isEmpty() && !internalFields.contains(ST_ID.name)) internalFields.add(ST_ID.name);
+        EntryDecoder decoder = EntryDecoder.forFields(fields);
+        batchRetriever.retrieve(stIds, chunk -> {
+            Map<String, Entry> byStId = new HashMap<>();
+            solrCore.batchRetrieveFromStableIds(chunk, internalFields, new EntryCallback(decoder, (solrDocument, entry) -> {
+                Object stId = solrDocument.getFieldValue(ST_ID.name);
+                if (stId != null) byStId.putIfAbsent(stId.toString().toLowerCase(), entry);
+            }), filterQueries);
+            return BatchRetriever.inOrder(chunk, byStId);
+        }, consumer);
     }
 
     @NonNull
     public List<Entry> batchRetrieveFromDbIds(List<Long> dbIds, @Nullable List<Field> fields) throws SolrSearcherException {
         if (dbIds == null) return List.of();
+        List<Entry> rtn = new ArrayList<>(dbIds.size());
+        batchRetrieveFromDbIds(dbIds, fields, rtn::add);
+        return rtn;
+    }
+
+    /**
+     * Retrieves the entries in chunks (see BatchRetriever), handing them to the consumer in the order of dbIds
+     */
+    public void batchRetrieveFromDbIds(List<Long> dbIds, @Nullable List<Field> fields, Consumer<Entry> consumer) throws SolrSearcherException {
+        if (dbIds == null) return;
         if (fields == null) fields = List.of();
-        SolrDocumentList response = solrCore.batchRetrieveFromDbIds(dbIds, fields.stream().map(Field::name).collect(Collectors.toList()));
-        if (response != null) {
-            return response.stream().map(solrDocument -> buildEntry(solrDocument, null)).collect(Collectors.toList());
-        }
-        return List.of();
+        List<String> internalFields = fields.stream().map(Field::name).collect(Collectors.toList());
+        EntryDecoder decoder = EntryDecoder.forFields(fields);
+        batchRetriever.retrieve(dbIds, chunk -> {
+            List<Entry> entries = new ArrayList<>(chunk.size());
+            solrCore.batchRetrieveFromDbIds(chunk, internalFields, new EntryCallback(decoder, (solrDocument, entry) -> entries.add(entry)));
+            return entries;
+        }, consumer);
     }
 
     @Nullable
     public Entry retrieveFromDbId(@Nullable Long dbId, @Nullable List<Field> fields) throws SolrSearcherException {
         if (dbId == null) return null;
         if (fields == null) fields = List.of();
-        return buildEntry(this.solrCore.retrieveFromDbId(dbId, fields.stream().map(Field::name).collect(Collectors.toList())), null);
+        return EntryDecoder.forFields(fields).decode(this.solrCore.retrieveFromDbId(dbId, fields.stream().map(Field::name).collect(Collectors.toList())), null);
     }
 
 
     /**
-     * @param rawOccurrence String with the following format "Diagram:Bool(IsInDiagram):CSV of occurrences:CSV of Interacts With"
-     * @param document      if null, will not use StId
+     * @param cursor   positioned on a value with the following format "Diagram:Bool(IsInDiagram):CSV of occurrences:CSV of Interacts With"
+     * @param document if null, will not use StId
      * @return DiagramOccurrencesResult
      */
-    private static DiagramOccurrencesResult extractRawOccurrence(String rawOccurrence, Optional<SolrDocument> document) {
-        String[] line = rawOccurrence.split(":");
-        String diagramStId = line[0];
-        List<String> occurrences = line[2].equals("#") ? null : Stream.of(line[2].split(",")).collect(Collectors.toList());
-        List<String> interactsWith = line[3].equals("#") ? null : Stream.of(line[3].split(",")).collect(Collectors.toList());
-        Boolean isInDiagram = Boolean.valueOf(line[1]);
+    private static DiagramOccurrencesResult extractRawOccurrence(OccurrenceCursor cursor, SolrDocument document) {
+        boolean isInDiagram = cursor.inDiagram();
+        if (document == null)
+            return new DiagramOccurrencesResult(cursor.diagram(), isInDiagram, cursor.occurrences(), cursor.interactsWith());
+        String stId = isInDiagram ? (String) document.getFieldValue(ST_ID.name) : null;
+        return new DiagramOccurrencesResult(stId, cursor.occurrences(), cursor.interactsWith());
+    }
 
-        if (document.isEmpty())
-            return new DiagramOccurrencesResult(diagramStId, isInDiagram, occurrences, interactsWith);
-        String stId = isInDiagram ? (String) document.get().getFieldValue(ST_ID.name) : null;
-        return new DiagramOccurrencesResult(stId, occurrences, interactsWith);
+    /**
+     * Facets and entries (grouped by type or not) of the queryObject from a single Solr request. Unlike
+     * getFacetingInformation followed by getGroupedEntries or getEntries, start and rows of the queryObject have
+     * to be set beforehand. resultCount and rows of the returned SearchResult are left to the caller.
+     *
+     * @param queryObject QueryObject (query, types, species, keywords, compartments, start, rows)
+     * @param grouped     group the entries by type
+     * @return SearchResult with the FacetMapping (not corrected, as getFacetingInformation) and GroupedResult
+     */
+    public SearchResult getFacetedEntries(Query queryObject, boolean grouped) throws SolrSearcherException {
+        return cache.get(FACETED_ENTRIES_CACHE + grouped + ":" + queryObject.getCanonicalKey(), () -> {
+            boolean json = multiSelectFacets.isEnabled();
+            QueryResponse response = solrCore.facetedSearch(queryObject, grouped, json ? multiSelectFacets.request() : null);
+            FacetMapping facetMapping = json ? multiSelectFacets.toFacetMapping(response, queryObject, false) : getFacetMap(response, queryObject);
+            GroupedResult groupedResult = grouped ? parseClusteredResponse(response) : parseResponse(response, false);
+            return new SearchResult(facetMapping, groupedResult, 0, 0);
+        }, SolrConverter::weight);
     }
 
     /**
@@ -393,14 +681,22 @@ public class SolrConverter {
      */
     public GroupedResult getGroupedEntries(Query queryObject) throws SolrSearcherException {
         if (queryObject != null && queryObject.getQuery() != null && !queryObject.getQuery().isEmpty()) {
-            QueryResponse queryResponse = solrCore.groupedSearch(queryObject);
-            if (queryResponse != null) {
-                return parseClusteredResponse(queryResponse);
-            }
+            return cache.get(GROUPED_ENTRIES_CACHE + queryObject.getCanonicalKey(),
+                    () -> parseClusteredResponse(solrCore.groupedSearch(queryObject)),
+                    SolrConverter::weight);
         }
         return null;
     }
 
+    public CompletableFuture<GroupedResult> getGroupedEntriesAsync(Query queryObject) {
+        if (queryObject != null && queryObject.getQuery() != null && !queryObject.getQuery().isEmpty()) {
+            return cache.getAsync(GROUPED_ENTRIES_CACHE + queryObject.getCanonicalKey(),
+                    () -> SearchExecutor.thenApply(solrCore.groupedSearchAsync(queryObject), this::parseClusteredResponse),
+                    SolrConverter::weight);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Converts Solr QueryResponse to GroupedResult
      *
@@ -417,6 +713,29 @@ public class SolrConverter {
         return null;
     }
 
+    public CompletableFuture<GroupedResult> getEntriesAsync(Query queryObject) {
+        if (queryObject != null && queryObject.getQuery() != null && !queryObject.getQuery().isEmpty()) {
+            return SearchExecutor.thenApply(solrCore.searchAsync(queryObject), response -> parseResponse(response, false));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Lazily retrieves every entry matching the queryObject, rows at a time (start and rows of the queryObject are
+     * ignored). Memory use does not depend on the size of the result. The stream should be closed when it is not
+     * fully consumed, so the prefetch of the next page is cancelled.
+     *
+     * @param queryObject QueryObject (query, types, species, keywords, compartments)
+     * @param rows        number of entries retrieved per request
+     * @return Stream of Entry, sorted by relevance
+     */
+    public Stream<Entry> streamEntries(Query queryObject, int rows) throws SolrSearcherException {
+        if (queryObject == null || queryObject.getQuery() == null || queryObject.getQuery().isEmpty()) {
+            return Stream.empty();
+        }
+        return solrCore.searchCursor(queryObject, rows).stream().map(solrDocument -> buildEntry(solrDocument, null));
+    }
+
     private GroupedResult parseResponse(QueryResponse queryResponse, boolean ignoreHighlight) {
         if (queryResponse != null) {
             List<SolrDocument> solrDocuments = queryResponse.getResults();
@@ -429,7 +748,9 @@ public class SolrConverter {
                 entries.add(entry);
             }
             resultList.add(new Result(entries, "Results", queryResponse.getResults().getNumFound(), entries.size()));
-            return new GroupedResult(resultList, solrDocuments.size(), 1, (int) queryResponse.getResults().getNumFound());
+            GroupedResult groupedResult = new GroupedResult(resultList, solrDocuments.size(), 1, (int) queryResponse.getResults().getNumFound());
+            groupedResult.setNextCursor(queryResponse.getNextCursorMark());
+            return groupedResult;
 
         }
         return null;
@@ -445,7 +766,7 @@ public class SolrConverter {
     private FacetMapping getFacetMap(QueryResponse response, Query queryObject) {
         if (response != null && queryObject != null) {
             FacetMapping facetMapping = new FacetMapping();
-            facetMapping.setTotalNumFount(response.getResults().getNumFound());
+            facetMapping.setTotalNumFount(getNumFound(response));
             facetMapping.setSpeciesFacet(getFacets(response.getFacetField(SPECIES_FACET.name), queryObject.getSpecies()));
             facetMapping.setTypeFacet(getFacets(response.getFacetField(TYPES.name), queryObject.getTypes()));
             facetMapping.setKeywordFacet(getFacets(response.getFacetField(KEYWORDS.name), queryObject.getKeywords()));
@@ -455,6 +776,16 @@ public class SolrConverter {
         return null;
     }
 
+    /**
+     * @return the number of matching documents, also for grouped responses
+     */
+    private static long getNumFound(QueryResponse response) {
+        if (response.getResults() != null) return response.getResults().getNumFound();
+        GroupResponse groupResponse = response.getGroupResponse();
+        if (groupResponse == null || groupResponse.getValues() == null || groupResponse.getValues().isEmpty()) return 0;
+        return groupResponse.getValues().get(0).getMatches();
+    }
+
     /**
      * Helper Method separates Faceting information into selected and available facets
      *
@@ -523,159 +854,7 @@ public class SolrConverter {
      * @return Entry
      */
     private Entry buildEntry(SolrDocument solrDocument, Map<String, Map<String, List<String>>> highlighting) {
-        if (solrDocument != null && !solrDocument.isEmpty()) {
-            Entry entry = new Entry();
-
-            entry.setDbId((String) solrDocument.getFieldValue(DB_ID.name));
-            entry.setStId((String) solrDocument.getFieldValue(ST_ID.name));
-            entry.setId((String)
-                    (solrDocument.containsKey(ST_ID.name) ? solrDocument.getFieldValue(ST_ID.name) : solrDocument.getFieldValue(DB_ID.name)));
-
-            entry.setType((String) solrDocument.getFieldValue(TYPE.name));
-            entry.setExactType((String) solrDocument.getFieldValue(EXACT_TYPE.name));
-            entry.setIsDisease((Boolean) solrDocument.getFieldValue(IS_DISEASE.name));
-            entry.setHasReferenceEntity((Boolean) solrDocument.getFieldValue(HAS_REFERENCE_ENTITY.name));
-            entry.setHasEHLD((Boolean) solrDocument.getFieldValue(HAS_EHLD.name));
-            entry.setDatabaseName((String) solrDocument.getFieldValue(DATABASE_NAME.name));
-            entry.setReferenceURL((String) solrDocument.getFieldValue(REFERENCE_URL.name));
-            entry.setRegulatorId((String) solrDocument.getFieldValue(REGULATOR_ID.name));
-            entry.setRegulatedEntityId((String) solrDocument.getFieldValue(REGULATED_ENTITY_ID.name));
-            entry.setSummation((String) solrDocument.getFieldValue(INFERRED_SUMMATION.name));
-            entry.setAuthoredPathways((String) solrDocument.getFieldValue(AUTHORED_PATHWAYS.name));
-            entry.setAuthoredReactions((String) solrDocument.getFieldValue(AUTHORED_REACTIONS.name));
-            entry.setReviewedPathways((String) solrDocument.getFieldValue(REVIEWED_PATHWAYS.name));
-            entry.setReviewedReactions((String) solrDocument.getFieldValue(REVIEWED_REACTIONS.name));
-            entry.setOrcidId((String) solrDocument.getFieldValue(ORCIDID.name));
-
-            //Only the first species is taken into account
-            entry.setSpecies(getStringListField(solrDocument, SPECIES.name));
-            entry.setCompartmentNames(getStringListField(solrDocument, COMPARTMENT_NAME.name));
-            entry.setCompartmentAccession(getStringListField(solrDocument, COMPARTMENT_ACCESSION.name));
-
-
-            if (highlighting != null && highlighting.containsKey(entry.getDbId())) {
-                setHighlighting(entry, solrDocument, highlighting.get(entry.getDbId()));
-            } else {
-                entry.setName((String) solrDocument.getFieldValue(NAME.name));
-                entry.setSummation((String) solrDocument.getFieldValue(SUMMATION.name));
-                entry.setReferenceName((String) solrDocument.getFieldValue(REFERENCE_NAME.name));
-                entry.setRegulator((String) solrDocument.getFieldValue(REGULATOR.name));
-                entry.setRegulatedEntity((String) solrDocument.getFieldValue(REGULATED_ENTITY.name));
-                entry.setReferenceIdentifier(selectRightReferenceIdentifier(solrDocument));
-            }
-
-            buildIconEntry(solrDocument, entry);
-            buildDeletedEntry(solrDocument, entry);
-
-            return entry;
-        }
-        return null;
-    }
-
-    private void buildIconEntry(SolrDocument solrDocument, Entry entry) {
-        // Icon Name stores the plain name. After search the name itself might have the highlighting.
-        entry.setIconName((String) solrDocument.getFieldValue(ICON_NAME.name));
-        entry.setIconCuratorName((String) solrDocument.getFieldValue(ICON_CURATOR_NAME.name));
-        entry.setIconCuratorOrcidId((String) solrDocument.getFieldValue(ICON_CURATOR_ORCIDID.name));
-        entry.setIconCuratorUrl((String) solrDocument.getFieldValue(ICON_CURATOR_URL.name));
-        entry.setIconDesignerName((String) solrDocument.getFieldValue(ICON_DESIGNER_NAME.name));
-        entry.setIconDesignerUrl((String) solrDocument.getFieldValue(ICON_DESIGNER_URL.name));
-        entry.setIconDesignerOrcidId((String) solrDocument.getFieldValue(ICON_DESIGNER_ORCIDID.name));
-
-        entry.setIconCategories(getStringListField(solrDocument, ICON_CATEGORIES.name));
-        entry.setIconReferences(getStringListField(solrDocument, ICON_REFERENCES.name));
-        entry.setIconEhlds(getStringListField(solrDocument, ICON_EHLDS.name));
-        entry.setIconPhysicalEntities(
-                getStringListField(solrDocument, ICON_PHYSICAL_ENTITIES.name)
-                        .stream()
-                        .map(iconPE -> {
-                            String[] iconPEs = iconPE.split("#");
-                            return new IconPhysicalEntity(iconPEs[0], iconPEs[1], iconPEs[2], iconPEs[3]);
-                        }).collect(Collectors.toCollection(TreeSet::new))
-        );
-    }
-
-    private void buildDeletedEntry(SolrDocument solrDocument, Entry entry) {
-        entry.setDeleted((Boolean) solrDocument.getFieldValue(DELETED.name));
-        entry.setReason((String) solrDocument.getFieldValue(DELETED_REASON.name));
-        entry.setExplanation((String) solrDocument.getFieldValue(DELETED_EXPLANATION.name));
-        entry.setDate((Date) solrDocument.getFieldValue(DELETED_DATE.name));
-        entry.setReplacementDbIds(getLongListField(solrDocument, DELETED_REPLACEMENT_DB_IDS.name));
-        entry.setReplacementStIds(getStringListField(solrDocument, DELETED_REPLACEMENT_ST_IDS.name));
-    }
-
-    private List<String> getStringListField(SolrDocument document, String field) {
-        Collection<Object> objects = document.getFieldValues(field);
-        if (objects != null && !objects.isEmpty()) {
-            return objects.stream().map(Objects::toString).collect(Collectors.toList());
-        }
-        return Collections.emptyList();
-    }
-
-    private  List<Long> getLongListField(SolrDocument document, String field) {
-        Collection<Object> objects = document.getFieldValues(field);
-        if (objects != null && !objects.isEmpty()) {
-            return objects.stream()
-                    .map(o -> (String) o)
-                    .map(Long::parseLong)
-                    .collect(Collectors.toList());
-        }
-        return Collections.emptyList();
-    }
-
-    private String selectRightReferenceIdentifier(SolrDocument solrDocument) {
-        Collection<Object> list = solrDocument.getFieldValues(REFERENCE_IDENTIFIERS.name);
-        if (list != null) {
-            String candidate = null;
-            for (Object obj : list) {
-                String str = (String) obj;
-                candidate = candidate == null ? str : candidate;
-                if (!str.contains(":")) {
-                    return str;
-                }
-            }
-            return candidate;
-        }
-        return null;
-    }
-
-    /**
-     * Helper Method that sets Highlighted snippets if they are available
-     *
-     * @param entry        Entry Object
-     * @param solrDocument Solr Document used when there are no highlighting Values
-     * @param snippets     Map containing the Highlighted Strings
-     */
-    private void setHighlighting(Entry entry, SolrDocument solrDocument, Map<String, List<String>> snippets) {
-        entry.setReferenceIdentifier(selectRightHighlightingForReferenceIdentifiers(solrDocument, snippets));
-
-        snippetHighlight(entry, Entry::setStId, ST_ID.name, snippets);
-        snippetHighlight(entry, Entry::setName, NAME.name, snippets);
-        snippetHighlight(entry, Entry::setSummation, SUMMATION.name, snippets);
-        snippetHighlight(entry, Entry::setReferenceName, REFERENCE_NAME.name, snippets);
-        snippetHighlight(entry, Entry::setRegulator, REGULATOR.name, snippets);
-        snippetHighlight(entry, Entry::setRegulatedEntity, REGULATED_ENTITY.name, snippets);
-    }
-
-    private void snippetHighlight(Entry entry, BiConsumer<Entry, String> fieldSetter, String field, Map<String, List<String>> snippets) {
-        List<String> snippet = snippets.get(field);
-        if (snippet != null && !snippet.isEmpty()) {
-            fieldSetter.accept(entry, snippet.get(0));
-        }
-    }
-
-    private String selectRightHighlightingForReferenceIdentifiers(SolrDocument solrDocument, Map<String, List<String>> snippets) {
-        List<String> identifierSnippets = snippets.get(REFERENCE_IDENTIFIERS.name);
-        if (identifierSnippets != null && !identifierSnippets.isEmpty()) {
-            for (String snippet : identifierSnippets) {
-                if (snippet.contains("highlighting")) {
-                    return snippet;
-                }
-            }
-            return identifierSnippets.get(0);
-        } else {
-            return selectRightReferenceIdentifier(solrDocument);
-        }
+        return EntryDecoder.ALL.decode(solrDocument, highlighting);
     }
 
     /**
@@ -715,6 +894,41 @@ public class SolrConverter {
         return null;
     }
 
+    /**
+     * Cache weight of the facets, zero hits are cached too since they drive the search fallbacks
+     */
+    private static int weight(FacetMapping facetMapping) {
+        return 1 + weight(facetMapping.getSpeciesFacet()) + weight(facetMapping.getTypeFacet())
+                + weight(facetMapping.getKeywordFacet()) + weight(facetMapping.getCompartmentFacet());
+    }
+
+    private static int weight(FacetList facetList) {
+        if (facetList == null) return 0;
+        return (facetList.getSelected() == null ? 0 : facetList.getSelected().size())
+                + (facetList.getAvailable() == null ? 0 : facetList.getAvailable().size());
+    }
+
+    /**
+     * Same as the facets and entries apart, without entries it is not cached (the target results are attached)
+     */
+    private static int weight(SearchResult searchResult) {
+        GroupedResult groupedResult = searchResult.getGroupedResult();
+        if (groupedResult == null || groupedResult.getRowCount() == 0) return 0;
+        return weight(searchResult.getFacetMapping()) + weight(groupedResult);
+    }
+
+    /**
+     * Empty results are not cached because the target results are attached to them afterwards
+     */
+    private static int weight(GroupedResult groupedResult) {
+        return groupedResult.getRowCount();
+    }
+
+    private static int weight(FireworksResult fireworksResult) {
+        if (fireworksResult.getFound() == null || fireworksResult.getFound() == 0) return 0;
+        return 1 + fireworksResult.getEntries().size() + fireworksResult.getFacets().size();
+    }
+
     /**
      * Helper Function for converting SolrCollatedResults
      *
@@ -731,30 +945,37 @@ public class SolrConverter {
         return null;
     }
 
+    /**
+     * Flags the llps and the pathways where the matching entities have interactors, taking every matching entity
+     * into account. When the flagging bitmaps are loaded only the dbIds are retrieved, otherwise the llps and the
+     * occurrences of the entities are paged through.
+     */
     public FireworksOccurrencesResult fireworksFlagging(Query queryObject) throws SolrSearcherException {
         FireworksOccurrencesResult rtn = new FireworksOccurrencesResult();
-        QueryResponse response = solrCore.fireworksFlagging(queryObject);
-        if (response != null && queryObject != null) {
-            List<SolrDocument> solrDocuments = response.getResults();
-            for (SolrDocument solrDocument : solrDocuments) {
+        if (queryObject == null) return rtn;
+        PathwayBitmaps bitmaps = fireworksFlaggingIndex.getBitmaps();
+        if (bitmaps != null) return fireworksFlagging(queryObject, bitmaps);
+        String occurrencesField = queryObject.getOccurrencesFieldName();
+        OccurrenceCursor cursor = new OccurrenceCursor();
+        try (DocumentCursor solrDocuments = solrCore.fireworksFlaggingCursor(queryObject, FLAGGING_ROWS, DB_ID.name, LLPS.name, occurrencesField)) {
+            while (solrDocuments.hasNext()) {
+                SolrDocument solrDocument = solrDocuments.next();
                 if (solrDocument.containsKey(LLPS.name)) {
                     rtn.addLlps(solrDocument.getFieldValues(LLPS.name).stream().map(Object::toString).collect(Collectors.toList()));
                 }
-                if (solrDocument.containsKey(queryObject.getOccurrencesFieldName())) {
-                    List<String> rawOccurrences = solrDocument.getFieldValues(queryObject.getOccurrencesFieldName()).stream().map(Object::toString).collect(Collectors.toList());
-                    for (String rawOccurrence : rawOccurrences) {
-                        // Diagram:Bool(IsInDiagram):CSV of occurrences:CSV of Interacts With
-                        String[] line = rawOccurrence.split(":");
-                        String pathwayStId = line[0];
-                        boolean interacts = !line[3].equals("#");
-                        // if there is(are) interactor(s), then get the diagram (first value) so the Fireworks can flag them.
-                        if (interacts) {
-                            // get the diagram and add it
-                            rtn.addInteractsWith(pathwayStId);
-                        }
+                Collection<Object> rawOccurrences = solrDocument.getFieldValues(occurrencesField);
+                if (rawOccurrences == null) continue;
+                for (Object rawOccurrence : rawOccurrences) {
+                    // if there is(are) interactor(s), then get the diagram (first value) so the Fireworks can flag them.
+                    if (cursor.reset(rawOccurrence.toString()) && cursor.hasInteractsWith()) {
+                        // get the diagram and add it
+                        rtn.addInteractsWith(cursor.diagram());
                     }
                 }
             }
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SolrSearcherException) throw (SolrSearcherException) e.getCause();
+            throw e;
         }
 
         // if it is in llps, remove from interacts with
@@ -770,13 +991,31 @@ public class SolrConverter {
         return rtn;
     }
 
+    private FireworksOccurrencesResult fireworksFlagging(Query queryObject, PathwayBitmaps bitmaps) throws SolrSearcherException {
+        BitSet llps = new BitSet(bitmaps.getPathways());
+        BitSet interactsWith = new BitSet(bitmaps.getPathways());
+        try (DocumentCursor solrDocuments = solrCore.fireworksFlaggingCursor(queryObject, FLAGGING_ROWS, DB_ID.name)) {
+            while (solrDocuments.hasNext()) {
+                Object dbId = solrDocuments.next().getFieldValue(DB_ID.name);
+                if (dbId != null) bitmaps.union(Long.parseLong(dbId.toString()), queryObject.getIncludeInteractors(), llps, interactsWith);
+            }
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SolrSearcherException) throw (SolrSearcherException) e.getCause();
+            throw e;
+        }
+        return bitmaps.toResult(llps, interactsWith);
+    }
+
     /**
-     * Query "Target" Solr Core for potential targets in our scope of annotation
+     * Checks the terms against the in-memory target dictionary or, while it is not loaded, queries the "Target"
+     * Solr Core for potential targets in our scope of annotation
      *
      * @return TargetResult - term:isTarget
      */
     public Set<TargetResult> getTargets(Query queryObject) {
-        Set<TargetResult> ret = new HashSet<>();
+        Set<TargetResult> ret = targetDictionary.getTargets(queryObject.getQuery());
+        if (ret != null) return ret;
+        ret = new HashSet<>();
         QueryResponse response = solrCore.getTargets(queryObject);
         if (response != null) {
             List<SolrDocument> solrDocuments = response.getResults();
@@ -1,27 +1,26 @@
 package org.reactome.server.search.solr;
 
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.StreamingResponseCallback;
+import org.apache.solr.client.solrj.impl.StreamingBinaryResponseParser;
+import org.apache.solr.client.solrj.request.LukeRequest;
+import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.request.SolrPing;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.SolrPingResponse;
+import org.apache.solr.client.solrj.response.TermsResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.FacetParams;
 import org.apache.solr.common.params.SolrParams;
-import org.reactome.server.search.domain.ParserType;
-import org.reactome.server.search.domain.Query;
+import org.reactome.server.search.domain.*;
 import org.reactome.server.search.exception.SolrSearcherException;
-import org.reactome.server.search.util.PreemptiveAuthInterceptor;
+import org.reactome.server.search.util.SearchExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,8 +30,12 @@ import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static org.reactome.server.search.solr.SolrConverter.Field.*;
@@ -51,8 +54,11 @@ class SolrCore {
 
     private final static Logger logger = LoggerFactory.getLogger("");
 
+    private final SolrClientFactory.PooledClient pooledClient;
     private final SolrClient solrClient;
     private final String solrCore;
+    private final SearchExecutor executor;
+    private final SolrGuard guard;
 
     private final static String SELECT_REQUEST_HANDLER = "/select";
     private final static String SEARCH_REQUEST_HANDLER = "/search";
@@ -68,12 +74,20 @@ class SolrCore {
     private final static String DIAGRAM_OCCURRENCES_REQUEST_HANDLER = "/diagrams/occurrences";
     private final static String ICON_FACET_HANDLER = "/icon/facet";
     private final static String DIAGRAM_FLAG_REQUEST_HANDLER = "/diagrams/flagging";
+    private final static String TERMS_REQUEST_HANDLER = "/terms";
+    private final static String GET_REQUEST_HANDLER = "/get";
 
     private final static String SOLR_DEF_TYPE = "defType";
     private final static String SOLR_MIN_MATCH = "mm";
     private final static String SOLR_SPELLCHECK_QUERY = "spellcheck.q";
     private final static String SOLR_GROUP_OFFSET = "group.offset";
     private final static String SOLR_GROUP_LIMIT = "group.limit";
+    private final static String SOLR_GROUP_FACET = "group.facet";
+    private final static String EXISTS_QUERY_PARAM = "eq";
+    private final static String IDS_PARAM = "ids";
+    private final static String JSON_FACET_PARAM = "json.facet";
+    private final static String SUMMARY_SCOPE_PARAM = "summary.scope";
+    private final static String SUMMARY_TYPES_PARAM = "summary.types";
 
     private final static String SPECIES_FACET = "species_facet";
     private final static String TYPE_FACET = "type_facet";
@@ -84,36 +98,41 @@ class SolrCore {
     private final static String TYPE_TAG = "{!tag=tf}";
     private final static String KEYWORD_TAG = "{!tag=kf}";
     private final static String COMPARTMENT_TAG = "{!tag=cf}";
+    private final static String SPECIES_EXCLUDE = "{!ex=sf}";
+    private final static String TYPE_EXCLUDE = "{!ex=tf}";
+    private final static String KEYWORD_EXCLUDE = "{!ex=kf}";
+    private final static String COMPARTMENT_EXCLUDE = "{!ex=cf}";
     private final static String ICON_TYPE_QUERY = "{!term f=type}icon";
     private final static String ICON_EXACT_TYPE_QUERY = "exactType:Icon";
 
     private final static String ALL_FIELDS = "*:*";
+    private final static String MATCH_ALL_QUERY = "{!lucene}" + ALL_FIELDS;
 
     private final static String TARGET_CORE = "target";
+    private final static String UNIQUE_KEY = DB_ID.name;
+    private final static String SCORE = "score";
+    private final static int DEFAULT_ROWS = 10;
 
     /**
      * Constructor for Dependency Injection
      * InitializeSolrClient
-     * since Solr 4.2 Solr is using by default a poolingClientConnectionManager
+     * The pool, timeouts, transport (HTTP/1.1 or HTTP/2) and replicas are configured in SolrClientFactory
+     * The bulkheads and circuit breaker around the requests are configured in SolrGuard
      *
-     * @param url solr URL
+     * @param url solr URL (or comma separated URLs of replicas)
      */
     @Autowired
     public SolrCore(@Value("${solr.host}") String url,
                     @Value("${solr.core}") String solrCore,
-                    @Value("${solr.user}") String user,
-                    @Value("${solr.password}") String password) {
+                    SolrClientFactory solrClientFactory,
+                    SearchExecutor executor,
+                    SolrGuard guard) {
         this.solrCore = solrCore;
-        if (user != null && !user.isEmpty() && password != null && !password.isEmpty()) {
-            HttpClientBuilder builder = HttpClientBuilder.create().addInterceptorFirst(new PreemptiveAuthInterceptor());
-            CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-            UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(user, password);
-            credentialsProvider.setCredentials(AuthScope.ANY, credentials);
-            HttpClient client = builder.setDefaultCredentialsProvider(credentialsProvider).build();
-            solrClient = new HttpSolrClient.Builder(url).withHttpClient(client).build();
-        } else {
-            solrClient = new HttpSolrClient.Builder(url).build();
-        }
+        this.executor = executor;
+        this.guard = guard;
+        this.pooledClient = solrClientFactory.create(url, solrCore);
+        this.solrClient = pooledClient.getClient();
+        guard.probeWith(this::ping);
         logger.info("solrClient initialized");
     }
 
@@ -134,6 +153,68 @@ class SolrCore {
         return false;
     }
 
+    /**
+     * @return the current state of the connection pool used to query Solr
+     */
+    ConnectionPoolStats getConnectionPoolStats() {
+        return pooledClient.getStats();
+    }
+
+    /**
+     * @return requests, errors, latency and health of each replica (empty when solr.host is a single URL)
+     */
+    List<ReplicaStats> getReplicaStats() {
+        return pooledClient.getReplicaStats();
+    }
+
+    /**
+     * @return requests hedged to a second replica and their wins (null for a single URL or when hedging is disabled)
+     */
+    HedgeStats getHedgeStats() {
+        return pooledClient.getHedgeStats();
+    }
+
+    /**
+     * @return concurrent requests and rejections of each group of handlers (empty when the bulkheads are disabled)
+     */
+    List<BulkheadStats> getBulkheadStats() {
+        return guard.getBulkheadStats();
+    }
+
+    /**
+     * @return state, transitions and rejections of the circuit breaker (null when it is disabled)
+     */
+    CircuitBreakerStats getCircuitBreakerStats() {
+        return guard.getCircuitBreakerStats();
+    }
+
+    /**
+     * @return the version of the index (changes every time the index is modified) or null if it cannot be retrieved
+     */
+    Long getIndexVersion() {
+        return getIndexVersion(solrCore);
+    }
+
+    /**
+     * @return the version of the index of the target core or null if it cannot be retrieved
+     */
+    Long getTargetIndexVersion() {
+        return getIndexVersion(TARGET_CORE);
+    }
+
+    private Long getIndexVersion(String core) {
+        try {
+            LukeRequest request = new LukeRequest();
+            request.setNumTerms(0);
+            request.setShowSchema(false);
+            Object version = request.process(solrClient, core).getIndexInfo().get("version");
+            return version == null ? null : Long.valueOf(version.toString());
+        } catch (IOException | SolrServerException | SolrException e) {
+            logger.warn("Index version of the '" + core + "' core could not be retrieved");
+        }
+        return null;
+    }
+
     /**
      * Query for checking if this specific String exists in the index
      *
@@ -149,6 +230,41 @@ class SolrCore {
         return queryResponse.getResults().getNumFound() > 0;
     }
 
+    /**
+     * Batched version of existsQuery, every query is checked in a single request.
+     * The request matches all documents (rows=0) and each query becomes a facet query parsed the same way the
+     * exists handler parses its main query, so the per-query counts are the number of hits existsQuery would get.
+     *
+     * @param queries Strings of the query parameters given
+     * @return for each query (same order), true if there are results
+     */
+    List<Boolean> existsQueries(List<String> queries) throws SolrSearcherException {
+        List<Boolean> rtn = new ArrayList<>(queries.size());
+        if (queries.isEmpty()) return rtn;
+        SolrQuery solrQuery = new SolrQuery();
+        solrQuery.setRequestHandler(EXISTS_REQUEST_HANDLER);
+        solrQuery.setQuery(MATCH_ALL_QUERY);
+        solrQuery.setRows(0);
+        solrQuery.setFacet(true);
+        for (int i = 0; i < queries.size(); i++) {
+            String key = EXISTS_QUERY_PARAM + i;
+            solrQuery.set(key, queries.get(i));
+            solrQuery.addFacetQuery("{!type=$" + SOLR_DEF_TYPE + " key=" + key + " v=$" + key + "}");
+        }
+
+        Map<String, Integer> counts = querysolrClient(solrQuery).getFacetQuery();
+        if (counts == null || counts.size() != queries.size()) {
+            // The handler does not support faceting, fall back to one request per query
+            for (String query : queries) rtn.add(existsQuery(query));
+            return rtn;
+        }
+        for (int i = 0; i < queries.size(); i++) {
+            Integer count = counts.get(EXISTS_QUERY_PARAM + i);
+            rtn.add(count != null && count > 0);
+        }
+        return rtn;
+    }
+
     /**
      * Converts all parameters of the given queryObject to Solr parameters and queries Solr Server
      * With this search handler the result will be grouped by their type
@@ -167,6 +283,10 @@ class SolrCore {
         return querysolrClient(parameters);
     }
 
+    CompletableFuture<QueryResponse> groupedSearchAsync(Query queryObject) {
+        return executor.supply(() -> groupedSearch(queryObject));
+    }
+
     /**
      * Converts all parameters of the given queryObject to Solr parameters and queries Solr Server
      * With this search handler the result will not be clustered
@@ -175,6 +295,10 @@ class SolrCore {
      * @return QueryResponse
      */
     QueryResponse search(Query queryObject) throws SolrSearcherException {
+        if (queryObject.getCursor() != null) {
+            int rows = queryObject.getRows() != null ? queryObject.getRows() : DEFAULT_ROWS;
+            return searchPage(queryObject, queryObject.getCursor(), rows, true);
+        }
         SolrQuery parameters = initQuery(queryObject, SEARCH_REQUEST_HANDLER);
 
         if (queryObject.getStart() != null && queryObject.getRows() != null) {
@@ -185,6 +309,60 @@ class SolrCore {
         return querysolrClient(parameters);
     }
 
+    CompletableFuture<QueryResponse> searchAsync(Query queryObject) {
+        return executor.supply(() -> search(queryObject));
+    }
+
+    /**
+     * Pages through the whole (non clustered) result of the queryObject following the cursorMark. start and rows
+     * of the queryObject are ignored.
+     *
+     * @param queryObject QueryObject (query, types, species, keywords, compartments)
+     * @param rows        number of documents per page
+     * @return DocumentCursor that has already retrieved the first page
+     */
+    DocumentCursor searchCursor(Query queryObject, int rows) throws SolrSearcherException {
+        return new DocumentCursor(cursorMark -> searchPage(queryObject, cursorMark, rows, false), rows, executor);
+    }
+
+    /**
+     * Pages through every document with occurrences (dbId, stId, the scope flags and both occurrences fields),
+     * sorted by the unique key
+     *
+     * @param rows number of documents per page
+     * @return DocumentCursor that has already retrieved the first page
+     */
+    DocumentCursor getOccurrencesCursor(int rows) throws SolrSearcherException {
+        return new DocumentCursor(cursorMark -> {
+            SolrQuery parameters = new SolrQuery();
+            parameters.setRequestHandler(SELECT_REQUEST_HANDLER);
+            parameters.setQuery("{!lucene}" + OCCURRENCES.name + ":[* TO *] OR " + OCCURRENCES_INTERACTOR.name + ":[* TO *]");
+            parameters.setFields(DB_ID.name, ST_ID.name, HAS_REFERENCE_ENTITY.name, IS_REFERENCE_SUMMARY.name, OCCURRENCES.name, OCCURRENCES_INTERACTOR.name);
+            parameters.setSort(UNIQUE_KEY, SolrQuery.ORDER.asc);
+            parameters.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            parameters.setRows(rows);
+            return querysolrClient(parameters);
+        }, rows, executor);
+    }
+
+    /**
+     * A page of the search sorted by score and then the unique key (as required by cursorMark). Unlike start,
+     * the cost of a page is the same at any depth.
+     *
+     * @param cursorMark CursorMarkParams.CURSOR_MARK_START for the first page, then the nextCursorMark of the previous one
+     * @param highlight  false to skip the highlighting
+     */
+    QueryResponse searchPage(Query queryObject, String cursorMark, int rows, boolean highlight) throws SolrSearcherException {
+        SolrQuery parameters = initQuery(queryObject, SEARCH_REQUEST_HANDLER);
+        parameters.setSort(SolrQuery.SortClause.desc(SCORE));
+        parameters.addSort(UNIQUE_KEY, SolrQuery.ORDER.asc);
+        parameters.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+        parameters.setRows(rows);
+        if (!highlight) parameters.setHighlight(false);
+        parameters.setQuery(queryObject.getQuery());
+        return querysolrClient(parameters);
+    }
+
     private SolrQuery initQuery(Query queryObject, final String handler) {
         SolrQuery parameters = new SolrQuery();
 
@@ -204,34 +382,48 @@ class SolrCore {
     }
 
     public void configureScope(SolrQuery parameters, Query.Scope scope) {
+        String filter = getScopeFilter(scope);
+        if (filter != null) parameters.addFilterQuery(filter);
+    }
+
+    /**
+     * @return the filter of the scope, null for BOTH
+     */
+    private String getScopeFilter(Query.Scope scope) {
         switch (scope) {
             case REFERENCE_ENTITY:
-                parameters.addFilterQuery(HAS_REFERENCE_ENTITY.name + ":false"); // We want to remove physical entities if they have a referenceEntity, to only include referenceEntities and Reactome specific Entities
-                break;
+                return HAS_REFERENCE_ENTITY.name + ":false"; // We want to remove physical entities if they have a referenceEntity, to only include referenceEntities and Reactome specific Entities
             case PHYSICAL_ENTITY:
-                parameters.addFilterQuery("-" + IS_REFERENCE_SUMMARY.name + ":true"); // Remove all summary entities
-                break;
-            case BOTH:
-                break;
+                return "-" + IS_REFERENCE_SUMMARY.name + ":true"; // Remove all summary entities
+            default:
+                return null;
         }
     }
 
+    /**
+     * The documents are streamed into the callback as the response is parsed
+     */
     @NonNull
-    QueryResponse batchRetrieveFromStableIds(@NonNull List<String> stableIds, @NonNull List<String> fields, String... filterQueries) throws SolrSearcherException {
+    QueryResponse batchRetrieveFromStableIds(@NonNull List<String> stableIds, @NonNull List<String> fields, StreamingResponseCallback callback, String... filterQueries) throws SolrSearcherException {
         SolrQuery parameters = new SolrQuery();
         parameters.setRequestHandler(SELECT_REQUEST_HANDLER);
         parameters.setQuery("{!terms f=stId}" + String.join(",", stableIds).toLowerCase()); // Important to be lower case as we are bypassing normal stId transformation by using {!terms}
         parameters.setRows(stableIds.size());
         parameters.setFilterQueries(filterQueries);
         parameters.setFields(fields.toArray(String[]::new));
-        return querysolrClient(parameters);
+        return streamsolrClient(parameters, callback);
     }
 
-    @NonNull
-    SolrDocumentList batchRetrieveFromDbIds(@NonNull List<Long> dbIds, @NonNull List<String> fields) throws SolrSearcherException {
+    /**
+     * Real time get of the dbIds, the documents are streamed into the callback (in the order of dbIds) as the
+     * response is parsed
+     */
+    void batchRetrieveFromDbIds(@NonNull List<Long> dbIds, @NonNull List<String> fields, StreamingResponseCallback callback) throws SolrSearcherException {
         SolrQuery parameters = new SolrQuery();
+        parameters.setRequestHandler(GET_REQUEST_HANDLER);
+        parameters.set(IDS_PARAM, dbIds.stream().map(Object::toString).collect(Collectors.joining(",")));
         parameters.setFields(fields.toArray(String[]::new));
-        return getByDbIds(dbIds, parameters);
+        streamsolrClient(parameters, callback);
     }
 
     @Nullable
@@ -265,6 +457,25 @@ class SolrCore {
         return querysolrClient(solrQuery);
     }
 
+    /**
+     * Every term indexed for the given field together with its document frequency
+     *
+     * @param field name of the field
+     * @return List of terms sorted in index order
+     */
+    List<TermsResponse.Term> getTerms(String field) throws SolrSearcherException {
+        SolrQuery solrQuery = new SolrQuery();
+        solrQuery.setRequestHandler(TERMS_REQUEST_HANDLER);
+        solrQuery.setTerms(true);
+        solrQuery.addTermsField(field);
+        solrQuery.setTermsLimit(-1);
+        solrQuery.setTermsMinCount(1);
+        solrQuery.setTermsSortString("index");
+        TermsResponse termsResponse = querysolrClient(solrQuery).getTermsResponse();
+        if (termsResponse == null || termsResponse.getTerms(field) == null) return Collections.emptyList();
+        return termsResponse.getTerms(field);
+    }
+
     /**
      * Method for spellcheck and suggestions
      * Properties (eg number of suggestions returned are set in the solrconfig.xml)
@@ -287,9 +498,71 @@ class SolrCore {
      * @return QueryResponse
      */
     QueryResponse getFacetingInformation(Query queryObject) throws SolrSearcherException {
+        return querysolrClient(getFacetingParameters(queryObject, FACET_REQUEST_HANDLER));
+    }
+
+    CompletableFuture<QueryResponse> getFacetingInformationAsync(Query queryObject) {
+        return executor.supply(() -> getFacetingInformation(queryObject));
+    }
+
+    /**
+     * Same filters as getFacetingInformation, but the counts are the facets of the JSON Facet API described by
+     * jsonFacet instead of the facet fields of the handler
+     *
+     * @param queryObject QueryObject (query, types, species, keywords, compartments)
+     * @param jsonFacet   json.facet parameter (the filters are tagged sf, tf, kf and cf)
+     * @return QueryResponse without documents
+     */
+    QueryResponse getJsonFacetingInformation(Query queryObject, String jsonFacet) throws SolrSearcherException {
+        SolrQuery parameters = getFacetingParameters(queryObject, FACET_REQUEST_HANDLER);
+        parameters.set(FacetParams.FACET, false); // setFacet(false) removes the parameter and the handler default applies
+        parameters.setRows(0);
+        parameters.set(JSON_FACET_PARAM, jsonFacet);
+        return querysolrClient(parameters);
+    }
+
+    CompletableFuture<QueryResponse> getJsonFacetingInformationAsync(Query queryObject, String jsonFacet) {
+        return executor.supply(() -> getJsonFacetingInformation(queryObject, jsonFacet));
+    }
+
+    /**
+     * Results (grouped by type or not) and facets of the queryObject in a single request, so a search page does not
+     * execute the query once for /facet and again for the entries. The filters are tagged as in
+     * getFacetingInformation and each facet excludes the filter of its own field.
+     *
+     * @param queryObject QueryObject (query, types, species, keywords, compartments, start, rows)
+     * @param grouped     use the grouped search handler
+     * @param jsonFacet   json.facet parameter, or null for the facet fields
+     * @return QueryResponse
+     */
+    QueryResponse facetedSearch(Query queryObject, boolean grouped, String jsonFacet) throws SolrSearcherException {
+        SolrQuery parameters = getFacetingParameters(queryObject, grouped ? GROUPED_SEARCH_REQUEST_HANDLER : SEARCH_REQUEST_HANDLER);
+        if (queryObject.getStart() != null && queryObject.getRows() != null) {
+            if (grouped) {
+                parameters.set(SOLR_GROUP_OFFSET, queryObject.getStart());
+                parameters.set(SOLR_GROUP_LIMIT, queryObject.getRows());
+            } else {
+                parameters.setStart(queryObject.getStart());
+                parameters.setRows(queryObject.getRows());
+            }
+        }
+        if (jsonFacet != null) {
+            parameters.set(JSON_FACET_PARAM, jsonFacet);
+        } else {
+            parameters.setFacet(true);
+            parameters.setFacetMinCount(1);
+            parameters.setFacetLimit(-1);
+            parameters.addFacetField(SPECIES_EXCLUDE + SPECIES_FACET, TYPE_EXCLUDE + TYPE_FACET, KEYWORD_EXCLUDE + KEYWORD_FACET, COMPARTMENT_EXCLUDE + COMPARTMENT_FACET);
+            // counts of documents, not of groups
+            parameters.set(SOLR_GROUP_FACET, false);
+        }
+        return querysolrClient(parameters);
+    }
+
+    private SolrQuery getFacetingParameters(Query queryObject, String handler) {
         SolrQuery parameters = new SolrQuery();
         configureScope(parameters, queryObject);
-        parameters.setRequestHandler(FACET_REQUEST_HANDLER);
+        parameters.setRequestHandler(handler);
         parameterParserType(queryObject, parameters);
         if (queryObject.getSpecies() != null && !queryObject.getSpecies().isEmpty()) {
             parameters.addFilterQuery(SPECIES_TAG + getFilterString(queryObject.getSpecies(), SPECIES_FACET));
@@ -305,7 +578,7 @@ class SolrCore {
         }
         parameters.addFilterQuery(queryObject.isDeleted() ? "deleted:true" : "-deleted");
         parameters.setQuery(queryObject.getQuery());
-        return querysolrClient(parameters);
+        return parameters;
     }
 
     /**
@@ -321,7 +594,10 @@ class SolrCore {
         return querysolrClient(parameters);
     }
 
-    QueryResponse getFireworksResult(Query queryObject) throws SolrSearcherException {
+    /**
+     * The documents are streamed into the callback as the response is parsed
+     */
+    QueryResponse getFireworksResult(Query queryObject, StreamingResponseCallback callback) throws SolrSearcherException {
         SolrQuery parameters = new SolrQuery();
         parameters.setRequestHandler(FIREWORKS_REQUEST_HANDLER);
         configureScope(parameters, queryObject);
@@ -335,15 +611,20 @@ class SolrCore {
         parameters.setRows(queryObject.getRows());
         parameters.setQuery(queryObject.getQuery());
 
-        return querysolrClient(parameters);
+        return streamsolrClient(parameters, callback);
+    }
+
+    CompletableFuture<QueryResponse> getFireworksResultAsync(Query queryObject, StreamingResponseCallback callback) {
+        return executor.supply(() -> getFireworksResult(queryObject, callback));
     }
 
     /**
-     * Getting all documents of a given term filtering by the Diagram stId where the user is
+     * Getting all documents of a given term filtering by the Diagram stId where the user is.
+     * The documents are streamed into the callback as the response is parsed
      *
      * @return QueryResponse
      */
-    QueryResponse getDiagrams(Query queryObject) throws SolrSearcherException {
+    QueryResponse getDiagrams(Query queryObject, StreamingResponseCallback callback) throws SolrSearcherException {
         SolrQuery parameters = new SolrQuery();
         parameters.setRequestHandler(DIAGRAM_REQUEST_HANDLER);
         configureScope(parameters, queryObject);
@@ -358,9 +639,95 @@ class SolrCore {
         parameters.setStart(queryObject.getStart());
         parameters.setRows(queryObject.getRows());
         parameters.setQuery(queryObject.getQuery());
+        return streamsolrClient(parameters, callback);
+    }
+
+    CompletableFuture<QueryResponse> getDiagramsAsync(Query queryObject, StreamingResponseCallback callback) {
+        return executor.supply(() -> getDiagrams(queryObject, callback));
+    }
+
+    /**
+     * Counts of getFireworksResult, or of getDiagrams when diagram is set, with rows=0. The request goes to the
+     * handler of each, so the query is parsed the same way. Only the query, the species and (for the diagram) the
+     * diagram filter the documents, the scope and types filters are applied in the domain of each facet instead, so
+     * the counts without the scope are there too (and are not skipped by Solr when nothing is found in the scope).
+     * The type facets do not apply the types filter, as in the handlers.
+     *
+     * @param queryObject QueryObject (query, species, types, scope, filterQuery as the diagram)
+     * @param diagram     count the documents of getDiagrams instead of the ones of getFireworksResult
+     * @return QueryResponse without documents, facets found and types, and the same prefixed with "both" for the
+     * counts without the scope unless it is BOTH already (see summaryFacetName)
+     */
+    QueryResponse getDiagramSearchSummary(Query queryObject, boolean diagram) throws SolrSearcherException {
+        SolrQuery parameters = new SolrQuery();
+        if (diagram) {
+            parameters.setRequestHandler(DIAGRAM_REQUEST_HANDLER);
+            if (queryObject.getSpecies() != null && !queryObject.getSpecies().isEmpty()) {
+                parameters.addFilterQuery(getFilterString(queryObject.getSpecies(), FIREWORKS_SPECIES.name));
+            }
+            parameters.addFilterQuery(queryObject.getDiagramsFieldName() + ":" + queryObject.getFilterQuery());
+        } else {
+            parameters.setRequestHandler(FIREWORKS_REQUEST_HANDLER);
+            parameters.addFilterQuery(getFilterString(queryObject.getSpecies(), FIREWORKS_SPECIES.name));
+        }
+        List<String> filters = new ArrayList<>();
+        String scope = getScopeFilter(queryObject.getScope());
+        if (scope != null) {
+            parameters.set(SUMMARY_SCOPE_PARAM, scope);
+            filters.add(SUMMARY_SCOPE_PARAM);
+        }
+        List<String> typeFilters = new ArrayList<>(filters);
+        if (queryObject.getTypes() != null && !queryObject.getTypes().isEmpty()) {
+            parameters.set(SUMMARY_TYPES_PARAM, getFilterString(queryObject.getTypes(), TYPE_FACET));
+            filters.add(SUMMARY_TYPES_PARAM);
+        }
+        parameters.set(FacetParams.FACET, false); // setFacet(false) removes the parameter and the handler default applies
+        parameters.setStart(0);
+        parameters.setRows(0);
+
+        StringJoiner facets = new StringJoiner(",", "{", "}");
+        addDiagramSummaryFacets(facets, "", filters, typeFilters);
+        if (scope != null) {
+            filters.remove(SUMMARY_SCOPE_PARAM);
+            typeFilters.remove(SUMMARY_SCOPE_PARAM);
+            addDiagramSummaryFacets(facets, "both", filters, typeFilters);
+        }
+        parameters.set(JSON_FACET_PARAM, facets.toString());
+        parameters.setQuery(queryObject.getQuery());
         return querysolrClient(parameters);
     }
 
+    CompletableFuture<QueryResponse> getDiagramSearchSummaryAsync(Query queryObject, boolean diagram) {
+        return executor.supply(() -> getDiagramSearchSummary(queryObject, diagram));
+    }
+
+    /**
+     * Adds the found and types facets for the given filters (names of request parameters)
+     */
+    private static void addDiagramSummaryFacets(StringJoiner facets, String prefix, List<String> filters, List<String> typeFilters) {
+        String count = "{\"type\":\"query\",\"q\":\"" + ALL_FIELDS + "\",\"domain\":";
+        String types = "{\"type\":\"terms\",\"field\":\"" + TYPE_FACET + "\",\"limit\":-1,\"mincount\":1,\"domain\":";
+        facets.add("\"" + summaryFacetName(prefix, "found") + "\":" + count + filterDomain(filters) + "}");
+        facets.add("\"" + summaryFacetName(prefix, "types") + "\":" + types + filterDomain(typeFilters) + "}");
+    }
+
+    /**
+     * @return a domain applying the queries in the given request parameters, which need no escaping this way
+     */
+    private static String filterDomain(List<String> parameters) {
+        if (parameters.isEmpty()) return "{}";
+        StringJoiner filters = new StringJoiner(",", "{\"filter\":[", "]}");
+        for (String parameter : parameters) filters.add("\"{!v=$" + parameter + "}\"");
+        return filters.toString();
+    }
+
+    /**
+     * @return the name of a facet of getDiagramSearchSummary, prefix is empty or "both"
+     */
+    static String summaryFacetName(String prefix, String name) {
+        return prefix.isEmpty() ? name : prefix + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
     /**
      * Getting document based on the given stId (entry selected by the user).
      * Only subpathways field is returned.
@@ -375,25 +742,50 @@ class SolrCore {
     }
 
     /**
-     * Getting document based on the given stId (entry selected by the user).
-     * Only subpathways field is returned.
+     * Pages through every document matching the term that occurs in the diagram (the filterQuery of the
+     * queryObject), returning the occurrences field and the stId. The diagram is matched with a prefix filter on
+     * "Diagram:", so only the values of exactly that diagram match and the filter is cached in the filterCache.
+     *
+     * @param rows number of documents per page
+     * @return DocumentCursor that has already retrieved the first page
      */
-    QueryResponse getDiagramFlagging(Query queryObject) throws SolrSearcherException {
-        SolrQuery parameters = new SolrQuery();
-        parameters.setRequestHandler(DIAGRAM_FLAG_REQUEST_HANDLER);
-        configureScope(parameters, queryObject);
-        parameters.setQuery(String.format("\"%s\" AND %s:%s*", queryObject.getQuery(), queryObject.getOccurrencesFieldName(), queryObject.getFilterQuery()));
-        parameters.setFields(queryObject.getOccurrencesFieldName(), ST_ID.name); // solr response will contain only DIAGRAM_OCCURRENCES and ST_ID.
-        //If the term returns more than 100, it is not accurate enough. Only first 100 are taken into account for flagging
-        parameters.setRows(100);
-        return querysolrClient(parameters);
+    DocumentCursor getDiagramFlagging(Query queryObject, int rows) throws SolrSearcherException {
+        return new DocumentCursor(cursorMark -> {
+            SolrQuery parameters = new SolrQuery();
+            parameters.setRequestHandler(DIAGRAM_FLAG_REQUEST_HANDLER);
+            configureScope(parameters, queryObject);
+            parameters.setQuery(String.format("\"%s\"", queryObject.getQuery()));
+            parameters.addFilterQuery(String.format("{!prefix f=%s}%s:", queryObject.getOccurrencesFieldName(), queryObject.getFilterQuery()));
+            parameters.setFields(queryObject.getOccurrencesFieldName(), ST_ID.name); // solr response will contain only DIAGRAM_OCCURRENCES and ST_ID.
+            parameters.setSort(UNIQUE_KEY, SolrQuery.ORDER.asc);
+            parameters.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            parameters.setRows(rows);
+            return querysolrClient(parameters);
+        }, rows, executor);
+    }
+
+    /**
+     * Pages through every document the fireworks flagging of the queryObject takes into account
+     *
+     * @param rows   number of documents per page
+     * @param fields fields of the documents to retrieve
+     * @return DocumentCursor that has already retrieved the first page
+     */
+    DocumentCursor fireworksFlaggingCursor(Query queryObject, int rows, String... fields) throws SolrSearcherException {
+        return new DocumentCursor(cursorMark -> {
+            SolrQuery parameters = fireworksFlaggingQuery(queryObject);
+            parameters.setFields(fields);
+            parameters.setSort(UNIQUE_KEY, SolrQuery.ORDER.asc);
+            parameters.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            parameters.setRows(rows);
+            return querysolrClient(parameters);
+        }, rows, executor);
     }
 
-    QueryResponse fireworksFlagging(Query queryObject) throws SolrSearcherException {
+    private SolrQuery fireworksFlaggingQuery(Query queryObject) {
         SolrQuery parameters = new SolrQuery();
         parameters.setRequestHandler(FIREWORKS_FLAGGING_REQUEST_HANDLER);
         configureScope(parameters, queryObject);
-        parameters.setFields(LLPS.name, queryObject.getOccurrencesFieldName());
         parameters.setQuery(queryObject.getQuery());
         if (queryObject.getSpecies() != null) {
             if (!queryObject.getSpecies().contains("Entries without species")) {
@@ -403,9 +795,26 @@ class SolrCore {
                 parameters.addFilterQuery(getFilterString(queryObject.getSpecies(), FIREWORKS_SPECIES.name));
             }
         }
-        //If the term returns more than 100, it is not accurate enough. Only first 100 are taken into account for flagging
-        parameters.setRows(100);
-        return querysolrClient(parameters);
+        return parameters;
+    }
+
+    /**
+     * Pages through the dbId, llps and both occurrences fields of every document, sorted by the unique key
+     *
+     * @param rows number of documents per page
+     * @return DocumentCursor that has already retrieved the first page
+     */
+    DocumentCursor getFlaggingCursor(int rows) throws SolrSearcherException {
+        return new DocumentCursor(cursorMark -> {
+            SolrQuery parameters = new SolrQuery();
+            parameters.setRequestHandler(SELECT_REQUEST_HANDLER);
+            parameters.setQuery(MATCH_ALL_QUERY);
+            parameters.setFields(DB_ID.name, LLPS.name, OCCURRENCES.name, OCCURRENCES_INTERACTOR.name);
+            parameters.setSort(UNIQUE_KEY, SolrQuery.ORDER.asc);
+            parameters.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            parameters.setRows(rows);
+            return querysolrClient(parameters);
+        }, rows, executor);
     }
 
     /**
@@ -418,13 +827,35 @@ class SolrCore {
         configureScope(parameters, queryObject);
         parameters.setQuery(queryObject.getQuery());
         try {
-            return solrClient.query(TARGET_CORE, parameters);
-        } catch (IOException | SolrServerException | SolrException e) {
+            return guard.call(SolrGuard.Bulkhead.SEARCH, () -> solrClient.query(TARGET_CORE, parameters));
+        } catch (IOException | SolrServerException | SolrException | SolrSearcherException e) {
             // nothing here
         }
         return null;
     }
 
+    /**
+     * Page of the target core documents with the fields used to identify a target
+     *
+     * @param start offset of the first document
+     * @param rows  number of documents
+     * @return SolrDocumentList including the total number of documents in the core
+     */
+    SolrDocumentList getTargetDocuments(int start, int rows) throws SolrSearcherException {
+        SolrQuery parameters = new SolrQuery();
+        parameters.setRequestHandler(SELECT_REQUEST_HANDLER);
+        parameters.setQuery(ALL_FIELDS);
+        parameters.setFields(TARGET_IDENTIFIER.name, TARGET_ACCESSIONS.name, TARGET_GENENAMES.name, TARGET_SYNONYMS.name, TARGET_RESOURCE.name);
+        parameters.setStart(start);
+        parameters.setRows(rows);
+        try {
+            return guard.call(SolrGuard.Bulkhead.BATCH, () -> solrClient.query(TARGET_CORE, parameters, SolrRequest.METHOD.POST)).getResults();
+        } catch (IOException | SolrServerException | SolrException e) {
+            logger.error("Solr exception occurred with query: " + parameters, e);
+            throw new SolrSearcherException("Solr exception occurred with query: " + parameters, e);
+        }
+    }
+
     QueryResponse getIconFacetingInformation() throws SolrSearcherException {
         SolrQuery parameters = new SolrQuery();
         parameters.setRequestHandler(ICON_FACET_HANDLER);
@@ -488,7 +919,7 @@ class SolrCore {
      */
     private QueryResponse querysolrClient(SolrQuery query) throws SolrSearcherException {
         try {
-            return solrClient.query(solrCore, query, SolrRequest.METHOD.POST);
+            return guard.call(bulkhead(query.getRequestHandler()), () -> solrClient.query(solrCore, query, SolrRequest.METHOD.POST));
         } catch (IOException | SolrServerException e) {
             logger.error("Solr exception occurred with query: " + query, e);
             throw new SolrSearcherException("Solr exception occurred with query: " + query, e);
@@ -496,17 +927,21 @@ class SolrCore {
     }
 
     /**
-     * executes a Query
+     * executes a Query streaming the documents into the callback instead of collecting them in the QueryResponse
      *
-     * @param query SolrQuery Object
-     * @return QueryResponse
+     * @param query    SolrQuery Object
+     * @param callback receives the documents as they are parsed
+     * @return QueryResponse without the documents
      */
-    private SolrDocumentList getByDbIds(List<Long> query, SolrParams params) throws SolrSearcherException {
+    private QueryResponse streamsolrClient(SolrQuery query, StreamingResponseCallback callback) throws SolrSearcherException {
         try {
-            return solrClient.getById(solrCore, query.stream().map(Object::toString).collect(Collectors.toList()), params);
+            QueryRequest request = new QueryRequest(query, SolrRequest.METHOD.POST);
+            request.setStreamingResponseCallback(callback);
+            request.setResponseParser(new StreamingBinaryResponseParser(callback));
+            return guard.call(bulkhead(query.getRequestHandler()), () -> request.process(solrClient, solrCore));
         } catch (IOException | SolrServerException e) {
-            logger.error("Solr exception occurred with /get: " + query, e);
-            throw new SolrSearcherException("Solr exception occurred with /get: " + query, e);
+            logger.error("Solr exception occurred with query: " + query, e);
+            throw new SolrSearcherException("Solr exception occurred with query: " + query, e);
         }
     }
 
@@ -518,10 +953,35 @@ class SolrCore {
      */
     private SolrDocument getByDbId(Long dbId, SolrParams params) throws SolrSearcherException {
         try {
-            return solrClient.getById(solrCore, dbId.toString(), params);
+            return guard.call(SolrGuard.Bulkhead.BATCH, () -> solrClient.getById(solrCore, dbId.toString(), params));
         } catch (IOException | SolrServerException e) {
             logger.error("Solr exception occurred with /get: " + dbId, e);
             throw new SolrSearcherException("Solr exception occurred with /get : " + dbId, e);
         }
     }
+
+    /**
+     * @return the group of handlers whose bulkhead limits the requests to the given handler
+     */
+    private static SolrGuard.Bulkhead bulkhead(String handler) {
+        if (handler == null) return SolrGuard.Bulkhead.SEARCH;
+        switch (handler) {
+            case SUGGEST_REQUEST_HANDLER:
+            case SPELLCHECK_REQUEST_HANDLER:
+                return SolrGuard.Bulkhead.SUGGEST;
+            case FACET_REQUEST_HANDLER:
+            case TOTAL_FACET_REQUEST_HANDLER:
+            case ICON_FACET_HANDLER:
+                return SolrGuard.Bulkhead.FACET;
+            case FIREWORKS_FLAGGING_REQUEST_HANDLER:
+            case DIAGRAM_FLAG_REQUEST_HANDLER:
+                return SolrGuard.Bulkhead.FLAGGING;
+            case SELECT_REQUEST_HANDLER:
+            case GET_REQUEST_HANDLER:
+            case TERMS_REQUEST_HANDLER:
+                return SolrGuard.Bulkhead.BATCH;
+            default:
+                return SolrGuard.Bulkhead.SEARCH;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrException;
+import org.reactome.server.search.domain.BulkheadStats;
+import org.reactome.server.search.domain.CircuitBreakerStats;
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bulkheads and circuit breaker around the requests SolrCore sends to Solr.
+ * <p>
+ * With solr.bulkhead.enabled, each group of handlers has its own limit of concurrent requests, so slow fireworks or
+ * flagging requests cannot take every pooled connection and starve the suggestions. A request waits at most
+ * solr.bulkhead.wait milliseconds for a slot before it is rejected.
+ * <p>
+ * With solr.breaker.enabled, the outcome of the last solr.breaker.window requests is kept and the breaker opens
+ * when, after at least minCalls of them, the rate of failures (transport errors and 5xx) or of calls slower than
+ * slowCall milliseconds reaches its threshold (batch retrieval is expected to be slow and is not timed). While open,
+ * requests fail fast instead of waiting for a socket timeout. After openDuration milliseconds the breaker is
+ * half-open and probes Solr with a ping, closing again when it answers and staying open for another openDuration
+ * when it does not.
+ */
+@Component
+class SolrGuard implements DisposableBean {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    /**
+     * Groups of handlers sharing a bulkhead
+     */
+    enum Bulkhead {
+        SUGGEST, SEARCH, FACET, FLAGGING, BATCH
+    }
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @FunctionalInterface
+    interface SolrCall<T> {
+        T call() throws SolrServerException, IOException;
+    }
+
+    private final Map<Bulkhead, Limit> limits;
+    private final long wait;
+    private final Breaker breaker;
+
+    @Autowired
+    SolrGuard(@Value("${solr.bulkhead.enabled:false}") boolean bulkheads,
+              @Value("${solr.bulkhead.suggest:8}") int suggest,
+              @Value("${solr.bulkhead.search:32}") int search,
+              @Value("${solr.bulkhead.facet:16}") int facet,
+              @Value("${solr.bulkhead.flagging:8}") int flagging,
+              @Value("${solr.bulkhead.batch:8}") int batch,
+              @Value("${solr.bulkhead.wait:1000}") long wait,
+              @Value("${solr.breaker.enabled:false}") boolean breaker,
+              @Value("${solr.breaker.window:50}") int window,
+              @Value("${solr.breaker.minCalls:20}") int minCalls,
+              @Value("${solr.breaker.errorRate:0.5}") double errorRate,
+              @Value("${solr.breaker.slowCall:5000}") long slowCall,
+              @Value("${solr.breaker.slowRate:0.8}") double slowRate,
+              @Value("${solr.breaker.openDuration:10000}") long openDuration) {
+        this.limits = new EnumMap<>(Bulkhead.class);
+        if (bulkheads) {
+            limits.put(Bulkhead.SUGGEST, new Limit(suggest));
+            limits.put(Bulkhead.SEARCH, new Limit(search));
+            limits.put(Bulkhead.FACET, new Limit(facet));
+            limits.put(Bulkhead.FLAGGING, new Limit(flagging));
+            limits.put(Bulkhead.BATCH, new Limit(batch));
+        }
+        this.wait = Math.max(0, wait);
+        this.breaker = breaker ? new Breaker(window, minCalls, errorRate, slowCall, slowRate, openDuration) : null;
+    }
+
+    /**
+     * @param ping used by the breaker to probe Solr when it is half-open
+     */
+    void probeWith(BooleanSupplier ping) {
+        if (breaker != null) breaker.ping = ping;
+    }
+
+    /**
+     * Runs the call within the bulkhead of the given group and records its outcome in the breaker
+     *
+     * @throws SolrSearcherException when the breaker is open or the bulkhead is full
+     */
+    <T> T call(Bulkhead bulkhead, SolrCall<T> call) throws SolrServerException, IOException, SolrSearcherException {
+        if (breaker != null && !breaker.allow()) {
+            throw new SolrSearcherException("Solr is unavailable, circuit breaker is " + breaker.state);
+        }
+        Limit limit = limits.get(bulkhead);
+        if (limit != null) limit.acquire(bulkhead);
+        long start = System.nanoTime();
+        try {
+            T rtn = call.call();
+            if (breaker != null) breaker.record(false, bulkhead != Bulkhead.BATCH && millis(start) >= breaker.slowCall);
+            return rtn;
+        } catch (SolrServerException | IOException | SolrException e) {
+            if (breaker != null) {
+                boolean failure = !(e instanceof SolrException) || ((SolrException) e).code() >= 500;
+                breaker.record(failure, !failure && bulkhead != Bulkhead.BATCH && millis(start) >= breaker.slowCall);
+            }
+            throw e;
+        } finally {
+            if (limit != null) limit.semaphore.release();
+        }
+    }
+
+    /**
+     * @return the state of each bulkhead, empty when they are disabled
+     */
+    List<BulkheadStats> getBulkheadStats() {
+        List<BulkheadStats> rtn = new ArrayList<>();
+        limits.forEach((bulkhead, limit) -> rtn.add(new BulkheadStats(bulkhead.name(), limit.size, limit.size - limit.semaphore.availablePermits(), limit.rejected.sum())));
+        return rtn;
+    }
+
+    /**
+     * @return the state and transitions of the circuit breaker, null when it is disabled
+     */
+    CircuitBreakerStats getCircuitBreakerStats() {
+        return breaker == null ? null : breaker.getStats();
+    }
+
+    @Override
+    public void destroy() {
+        if (breaker != null) breaker.scheduler.shutdownNow();
+    }
+
+    private static long millis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private class Limit {
+        private final int size;
+        private final Semaphore semaphore;
+        private final LongAdder rejected = new LongAdder();
+
+        private Limit(int size) {
+            this.size = Math.max(1, size);
+            this.semaphore = new Semaphore(this.size);
+        }
+
+        private void acquire(Bulkhead bulkhead) throws SolrSearcherException {
+            try {
+                if (semaphore.tryAcquire(wait, TimeUnit.MILLISECONDS)) return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            rejected.increment();
+            throw new SolrSearcherException("Too many concurrent " + bulkhead.name().toLowerCase() + " requests to Solr");
+        }
+    }
+
+    private static class Breaker {
+        private final static int FAILURE = 1;
+        private final static int SLOW = 2;
+
+        private final int[] outcomes;
+        private final int minCalls;
+        private final double errorRate;
+        private final long slowCall;
+        private final double slowRate;
+        private final long openDuration;
+        private final ScheduledExecutorService scheduler;
+        private volatile BooleanSupplier ping = () -> false;
+        private volatile State state = State.CLOSED;
+        private int calls = 0;
+        private int failures = 0;
+        private int slow = 0;
+        private final LongAdder rejected = new LongAdder();
+        private long opened = 0;
+        private long halfOpened = 0;
+        private long closed = 0;
+        private long lastTransition = 0;
+
+        private Breaker(int window, int minCalls, double errorRate, long slowCall, double slowRate, long openDuration) {
+            this.outcomes = new int[Math.max(1, window)];
+            this.minCalls = Math.max(1, Math.min(outcomes.length, minCalls));
+            this.errorRate = errorRate;
+            this.slowCall = slowCall;
+            this.slowRate = slowRate;
+            this.openDuration = Math.max(1, openDuration);
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "SolrBreakerProbeThread");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private boolean allow() {
+            if (state == State.CLOSED) return true;
+            rejected.increment();
+            return false;
+        }
+
+        private synchronized void record(boolean failure, boolean slowCall) {
+            // answers of requests sent before the breaker opened
+            if (state != State.CLOSED) return;
+            int index = calls % outcomes.length;
+            if (calls >= outcomes.length) {
+                if ((outcomes[index] & FAILURE) != 0) failures--;
+                if ((outcomes[index] & SLOW) != 0) slow--;
+            }
+            outcomes[index] = (failure ? FAILURE : 0) | (slowCall ? SLOW : 0);
+            if (failure) failures++;
+            if (slowCall) slow++;
+            calls++;
+            int size = Math.min(calls, outcomes.length);
+            if (size < minCalls) return;
+            if (failures >= errorRate * size || slow >= slowRate * size) {
+                logger.warn("Solr circuit breaker opened: " + failures + " failed and " + slow + " slow of the last " + size + " requests");
+                open();
+            }
+        }
+
+        private synchronized void open() {
+            transition(State.OPEN);
+            opened++;
+            calls = failures = slow = 0;
+            scheduler.schedule(this::probe, openDuration, TimeUnit.MILLISECONDS);
+        }
+
+        private void probe() {
+            synchronized (this) {
+                transition(State.HALF_OPEN);
+                halfOpened++;
+            }
+            boolean available;
+            try {
+                available = ping.getAsBoolean();
+            } catch (RuntimeException e) {
+                available = false;
+            }
+            synchronized (this) {
+                if (available) {
+                    transition(State.CLOSED);
+                    closed++;
+                    logger.info("Solr circuit breaker closed, Solr answered the probe");
+                } else {
+                    open();
+                }
+            }
+        }
+
+        private void transition(State state) {
+            this.state = state;
+            lastTransition = System.currentTimeMillis();
+        }
+
+        private synchronized CircuitBreakerStats getStats() {
+            return new CircuitBreakerStats(state.name(), opened, halfOpened, closed, rejected.sum(), lastTransition);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.reactome.server.search.domain.TargetResult;
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+import static org.reactome.server.search.solr.SolrConverter.Field.*;
+
+/**
+ * In-memory copy of the target core: every identifier, accession, gene name and synonym (case folded) pointing to
+ * its resource. Telling whether the terms of a query are targets becomes a hash lookup per term.
+ * <p>
+ * The target core is small and only changes once per release, so it is loaded in the background at startup and
+ * again when its index version changes. Until it is loaded, getTargets returns null and the target core is queried.
+ */
+@Component
+class TargetDictionary implements InitializingBean {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    private final static int PAGE_SIZE = 10000;
+
+    private final boolean enabled;
+    private final SolrCore solrCore;
+    private final BackgroundReloader reloader;
+
+    private volatile Map<String, String> targets = null;
+
+    @Autowired
+    TargetDictionary(@Value("${search.targets.dictionary:true}") boolean enabled,
+                     SolrCore solrCore,
+                     SearchExecutor executor,
+                     IndexVersionMonitor indexVersionMonitor) {
+        this.enabled = enabled;
+        this.solrCore = solrCore;
+        this.reloader = new BackgroundReloader(executor, this::load);
+        if (enabled) indexVersionMonitor.onTargetIndexChange(this::reload);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) reload();
+    }
+
+    /**
+     * @param query the terms (separated by white spaces) to check
+     * @return one TargetResult per term if any of them is a target, an empty set if none is, or null when the
+     * dictionary is not available
+     */
+    Set<TargetResult> getTargets(String query) {
+        Map<String, String> targets = this.targets;
+        if (targets == null || query == null) return null;
+        Set<TargetResult> rtn = new HashSet<>();
+        boolean anyTarget = false;
+        for (String term : query.trim().split("\\s+")) {
+            if (term.isEmpty()) continue;
+            String key = term.toLowerCase(Locale.ROOT);
+            boolean isTarget = targets.containsKey(key);
+            anyTarget |= isTarget;
+            rtn.add(new TargetResult(term, targets.get(key), isTarget));
+        }
+        return anyTarget ? rtn : new HashSet<>();
+    }
+
+    void reload() {
+        reloader.reload();
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, String> targets = new HashMap<>();
+            SolrDocumentList page;
+            int offset = 0;
+            do {
+                page = solrCore.getTargetDocuments(offset, PAGE_SIZE);
+                for (SolrDocument document : page) {
+                    String resource = (String) document.getFieldValue(TARGET_RESOURCE.name);
+                    add(targets, document.getFieldValues(TARGET_IDENTIFIER.name), resource);
+                    add(targets, document.getFieldValues(TARGET_ACCESSIONS.name), resource);
+                    add(targets, document.getFieldValues(TARGET_GENENAMES.name), resource);
+                    add(targets, document.getFieldValues(TARGET_SYNONYMS.name), resource);
+                }
+                offset += page.size();
+            } while (!page.isEmpty() && offset < page.getNumFound());
+            this.targets = targets;
+            logger.info("Target dictionary loaded " + targets.size() + " identifiers from " + offset + " targets in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (SolrSearcherException | RuntimeException e) {
+            logger.error("The target dictionary could not be loaded, the target core will be queried instead", e);
+        }
+    }
+
+    private static void add(Map<String, String> targets, Collection<Object> values, String resource) {
+        if (values == null) return;
+        for (Object value : values) {
+            if (value != null) targets.putIfAbsent(value.toString().toLowerCase(Locale.ROOT), resource);
+        }
+    }
+}
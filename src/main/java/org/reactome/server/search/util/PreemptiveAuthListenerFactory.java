@@ -0,0 +1,31 @@
+package org.reactome.server.search.util;
+
+import org.apache.solr.client.solrj.impl.HttpListenerFactory;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http.HttpHeader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * HTTP/2 counterpart of {@link PreemptiveAuthInterceptor}: the basic authentication header is added to every
+ * request up front instead of waiting for the server to challenge it
+ */
+public class PreemptiveAuthListenerFactory implements HttpListenerFactory {
+
+    private final String authorization;
+
+    public PreemptiveAuthListenerFactory(String user, String password) {
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString((user + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public RequestResponseListener get() {
+        return new RequestResponseListener() {
+            @Override
+            public void onQueued(Request request) {
+                request.header(HttpHeader.AUTHORIZATION, authorization);
+            }
+        };
+    }
+}
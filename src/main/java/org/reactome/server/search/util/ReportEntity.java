@@ -1,5 +1,7 @@
 package org.reactome.server.search.util;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * @author Guilherme S Viteri <gviteri@ebi.ac.uk>
  */
@@ -7,6 +9,8 @@ package org.reactome.server.search.util;
 public class ReportEntity {
     private String term;
     private String resource;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer count; // number of times the term was reported when aggregated, otherwise null (once)
 
     public ReportEntity() {
     }
@@ -31,4 +35,12 @@ public class ReportEntity {
     public void setResource(String resource) {
         this.resource = resource;
     }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
 }
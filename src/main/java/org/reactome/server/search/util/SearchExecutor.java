@@ -0,0 +1,97 @@
+package org.reactome.server.search.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Executor behind the asynchronous API of the search core.
+ * Every task runs in its own virtual thread when the JVM supports them (Java 21+) and search.executor.virtual is
+ * enabled, otherwise tasks run in a cached pool of daemon threads.
+ * <p>
+ * Futures returned by {@link #supply(Callable)} interrupt the running task when they are cancelled.
+ */
+@Component
+public class SearchExecutor implements Executor, DisposableBean {
+
+    private final static Logger logger = LoggerFactory.getLogger("");
+
+    private final ExecutorService executor;
+
+    @Autowired
+    public SearchExecutor(@Value("${search.executor.virtual:true}") boolean virtual) {
+        ExecutorService executor = virtual ? newVirtualThreadExecutor() : null;
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "SearchExecutorThread");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the given task asynchronously. Cancelling the returned future interrupts the task if it is running.
+     *
+     * @param task the task to be run
+     * @return a future completed with the result of the task or with the exception it threw
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) running.cancel(true);
+        });
+        return result;
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    /**
+     * Same as {@link CompletableFuture#thenApply(Function)} but cancelling the returned future also cancels the source
+     */
+    public static <T, U> CompletableFuture<U> thenApply(CompletableFuture<T> source, Function<? super T, ? extends U> fn) {
+        CompletableFuture<U> rtn = source.thenApply(fn);
+        rtn.whenComplete((value, error) -> {
+            if (rtn.isCancelled()) source.cancel(true);
+        });
+        return rtn;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Virtual threads are looked up reflectively so the project still builds and runs on JVMs older than Java 21
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads are not available, falling back to platform threads");
+            return null;
+        }
+    }
+}
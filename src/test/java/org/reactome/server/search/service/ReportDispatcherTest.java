@@ -0,0 +1,99 @@
+package org.reactome.server.search.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactome.server.search.domain.Query;
+import org.reactome.server.search.domain.ReportStats;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.reactome.server.search.util.ReportInformationEnum.*;
+
+/**
+ * Replay of the report spool against a local report service
+ */
+public class ReportDispatcherTest {
+
+    @TempDir
+    Path folder;
+
+    private HttpServer server;
+    private ReportDispatcher dispatcher;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (dispatcher != null) dispatcher.destroy();
+        if (server != null) server.stop(0);
+    }
+
+    @Test
+    public void testFailingReportDoesNotBlockTheSpool() throws Exception {
+        // the service fails every report of "poison" and accepts the rest
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/report/search/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(body.contains("poison") ? 500 : 200, -1);
+            exchange.close();
+        });
+        server.start();
+        dispatcher = dispatcher("http://localhost:" + server.getAddress().getPort());
+
+        dispatcher.report(ReportDispatcher.NOT_FOUND, query("poison"), null);
+        awaitStats(stats -> stats.getSpooled() + stats.getFailed() > 0);
+        dispatcher.report(ReportDispatcher.NOT_FOUND, query("apoptosys"), null);
+        dispatcher.report(ReportDispatcher.NOT_FOUND, query("ptne"), null);
+
+        ReportStats stats = awaitStats(s -> s.getSent() == 2 && s.getFailed() == 1 && s.getSpooled() == 0);
+        assertEquals(0, stats.getDropped());
+    }
+
+    @Test
+    public void testUnreachableServiceKeepsTheReports() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort(); // nothing listens on it once closed
+        }
+        dispatcher = dispatcher("http://localhost:" + port);
+
+        dispatcher.report(ReportDispatcher.NOT_FOUND, query("apoptosys"), null);
+        awaitStats(stats -> stats.getSpooled() == 1);
+        Thread.sleep(200); // well past report.spool.maxAttempts retries
+
+        ReportStats stats = dispatcher.getStats();
+        assertEquals(1, stats.getSpooled());
+        assertEquals(0, stats.getFailed());
+        assertEquals(0, stats.getDropped());
+    }
+
+    private ReportDispatcher dispatcher(String url) throws IOException {
+        ReportDispatcher rtn = new ReportDispatcher("user", "password", url, 100, 10, 10, ReportDispatcher.DropPolicy.NEWEST, 1000,
+                0, 1000, 1, folder.resolve("reports.spool").toString(), 4096, 1, 5, 3);
+        rtn.afterPropertiesSet();
+        return rtn;
+    }
+
+    private static Query query(String term) {
+        Map<String, String> info = Map.of(RELEASEVERSION.getDesc(), "85", IPADDRESS.getDesc(), "127.0.0.1", USERAGENT.getDesc(), "agent");
+        return new Query.Builder(term).withReportInfo(info).build();
+    }
+
+    private ReportStats awaitStats(Predicate<ReportStats> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        ReportStats stats = dispatcher.getStats();
+        while (!condition.test(stats)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out, sent " + stats.getSent() + ", failed " + stats.getFailed() + ", spooled " + stats.getSpooled());
+            Thread.sleep(10);
+            stats = dispatcher.getStats();
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,111 @@
+package org.reactome.server.search.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactome.server.search.util.ReportEntity;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Binary format and space reclaiming of the report spool
+ */
+public class ReportSpoolTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = folder.resolve("reports.spool");
+        ReportEntity counted = new ReportEntity("PTEN", "UniProt");
+        counted.setCount(7);
+        ReportDispatcher.Report targets = new ReportDispatcher.Report(ReportDispatcher.TARGETS, "85", "127.0.0.1", "curl/8.0", List.of(counted, new ReportEntity("BRCA2", "")));
+        targets.count = 3;
+        targets.attempts = 2;
+        ReportDispatcher.Report notFound = new ReportDispatcher.Report(ReportDispatcher.NOT_FOUND, null, "::1", "Mozilla/5.0 (éè)", Collections.singletonList(new ReportEntity("apoptosys", null)));
+        try (ReportSpool spool = new ReportSpool(file, 4096)) {
+            assertTrue(spool.append(targets));
+            assertTrue(spool.append(notFound));
+        }
+
+        try (ReportSpool spool = new ReportSpool(file, 4096)) {
+            assertEquals(2, spool.size());
+            assertReport(targets, spool.peek());
+            spool.remove();
+        }
+
+        try (ReportSpool spool = new ReportSpool(file, 4096)) {
+            assertEquals(1, spool.size());
+            assertReport(notFound, spool.peek());
+            spool.remove();
+            assertEquals(0, spool.size());
+            assertNull(spool.peek());
+        }
+    }
+
+    @Test
+    public void testPeekAndRemoveBatch() throws IOException {
+        try (ReportSpool spool = new ReportSpool(folder.resolve("batch.spool"), 4096)) {
+            for (int i = 0; i < 5; i++) assertTrue(spool.append(report("term" + i)));
+            List<ReportDispatcher.Report> batch = spool.peek(3);
+            assertEquals(3, batch.size());
+            for (int i = 0; i < 3; i++) assertEquals("term" + i, batch.get(i).entities.get(0).getTerm());
+            spool.remove(3);
+            assertEquals(2, spool.size());
+            assertEquals("term3", spool.peek().entities.get(0).getTerm());
+            assertEquals(2, spool.peek(10).size());
+        }
+    }
+
+    @Test
+    public void testConsumedSpaceIsReclaimed() throws IOException {
+        Path file = folder.resolve("full.spool");
+        List<String> expected = new ArrayList<>();
+        try (ReportSpool spool = new ReportSpool(file, 1024)) {
+            int appended = 0;
+            while (spool.append(report("term" + appended))) expected.add("term" + appended++);
+            assertTrue(appended > 4);
+
+            // once the oldest reports are consumed there is room again at the start of the file
+            spool.remove(2);
+            expected.subList(0, 2).clear();
+            for (int i = 0; i < 2; i++) {
+                assertTrue(spool.append(report("more" + i)));
+                expected.add("more" + i);
+            }
+            assertFalse(spool.append(report("more2")));
+        }
+
+        try (ReportSpool spool = new ReportSpool(file, 1024)) {
+            List<String> found = new ArrayList<>();
+            for (ReportDispatcher.Report report : spool.peek(Integer.MAX_VALUE)) found.add(report.entities.get(0).getTerm());
+            assertEquals(expected, found);
+        }
+    }
+
+    private static ReportDispatcher.Report report(String term) {
+        return new ReportDispatcher.Report(ReportDispatcher.NOT_FOUND, "85", "127.0.0.1", "agent", Collections.singletonList(new ReportEntity(term, "")));
+    }
+
+    private static void assertReport(ReportDispatcher.Report expected, ReportDispatcher.Report actual) {
+        assertNotNull(actual);
+        assertEquals(expected.requestMapping, actual.requestMapping);
+        assertEquals(expected.release, actual.release);
+        assertEquals(expected.ip, actual.ip);
+        assertEquals(expected.agent, actual.agent);
+        assertEquals(expected.count, actual.count);
+        assertEquals(expected.attempts, actual.attempts);
+        assertEquals(expected.entities.size(), actual.entities.size());
+        for (int i = 0; i < expected.entities.size(); i++) {
+            assertEquals(expected.entities.get(i).getTerm(), actual.entities.get(i).getTerm());
+            assertEquals(expected.entities.get(i).getResource(), actual.entities.get(i).getResource());
+            assertEquals(expected.entities.get(i).getCount(), actual.entities.get(i).getCount());
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -213,6 +214,38 @@ public class SearchServiceTest {
         assertEquals(searchResult.getGroupedResult().getNumberOfMatches(), 3);
     }
 
+    @Test
+    public void testGetEntriesCursor() throws SolrSearcherException {
+        Query query = new Query.Builder("PTEN").numberOfRows(10).withCursor(Query.FIRST_PAGE).build();
+        GroupedResult firstPage = searchService.getEntries(query, true);
+        assertEquals(1, firstPage.getNumberOfGroups());
+        assertNotNull(firstPage.getNextCursor());
+
+        query = new Query.Builder("PTEN").numberOfRows(10).withCursor(firstPage.getNextCursor()).build();
+        GroupedResult secondPage = searchService.getEntries(query, true);
+        Set<String> firstIds = firstPage.getResults().get(0).getEntries().stream().map(Entry::getDbId).collect(Collectors.toSet());
+        assertTrue(secondPage.getResults().get(0).getEntries().stream().map(Entry::getDbId).noneMatch(firstIds::contains));
+    }
+
+    @Test
+    public void testGetSearchResultCursorCombined() throws SolrSearcherException {
+        // with search.combined the cursor still has to reach getEntries, ungrouped and with the following cursor
+        ReflectionTestUtils.setField(searchService, "combined", true);
+        try {
+            Query query = new Query.Builder("PTEN").numberOfRows(10).withCursor(Query.FIRST_PAGE).build();
+            GroupedResult firstPage = searchService.getSearchResult(query, 10, 1, true).getGroupedResult();
+            assertEquals(1, firstPage.getNumberOfGroups());
+            assertNotNull(firstPage.getNextCursor());
+
+            query = new Query.Builder("PTEN").numberOfRows(10).withCursor(firstPage.getNextCursor()).build();
+            GroupedResult secondPage = searchService.getSearchResult(query, 10, 2, true).getGroupedResult();
+            Set<String> firstIds = firstPage.getResults().get(0).getEntries().stream().map(Entry::getDbId).collect(Collectors.toSet());
+            assertTrue(secondPage.getResults().get(0).getEntries().stream().map(Entry::getDbId).noneMatch(firstIds::contains));
+        } finally {
+            ReflectionTestUtils.setField(searchService, "combined", false);
+        }
+    }
+
     @Test
     public void testGetEntriesNameGram() throws SolrSearcherException {
         List<String> species = List.of("Homo sapiens");
@@ -260,6 +293,43 @@ public class SearchServiceTest {
         assertTrue(60 <= fireworkFacets.get().getCount(), "60 or more results other diagrams results are expected");
     }
 
+    @Test
+    public void testDiagramSearchSummaryAsync() {
+        List<String> species = new ArrayList<>();
+        species.add("Homo sapiens");
+        String term = "KIF";
+        String diagram = "R-HSA-8848021";
+        Query query = new Query.Builder(term).addFilterQuery(diagram).forSpecies(species).build();
+        DiagramSearchSummary dss = searchService.getDiagramSearchSummaryAsync(query).join();
+
+        assertTrue(8 <= dss.getDiagramResult().getFound(), "8 or more results diagram results are expected");
+        assertTrue(94 <= dss.getFireworksResult().getFound(), "94 or more results other diagrams results are expected");
+    }
+
+    @Test
+    public void testDiagramSearchSummaryFacets() throws SolrSearcherException {
+        // the facet requests have to give the same counts as the /diagrams and /fireworks requests
+        for (String term : List.of("KIF", "ATP", "NOTHINGTOFIND")) {
+            for (String diagram : List.of("R-HSA-8848021", "R-HSA-69620")) {
+                DiagramSearchSummary expected = searchService.getDiagramSearchSummary(new Query.Builder(term).addFilterQuery(diagram).forSpecies(new ArrayList<>(species)).build());
+                ReflectionTestUtils.setField(searchService, "diagramSummaryFacets", true);
+                try {
+                    DiagramSearchSummary dss = searchService.getDiagramSearchSummary(new Query.Builder(term).addFilterQuery(diagram).forSpecies(new ArrayList<>(species)).build());
+                    assertEquals(expected.getDiagramResult().getFound(), dss.getDiagramResult().getFound(), term + " in " + diagram);
+                    assertEquals(counts(expected.getDiagramResult().getFacets()), counts(dss.getDiagramResult().getFacets()), term + " in " + diagram);
+                    assertEquals(expected.getFireworksResult().getFound(), dss.getFireworksResult().getFound(), term + " in " + diagram);
+                    assertEquals(counts(expected.getFireworksResult().getFacets()), counts(dss.getFireworksResult().getFacets()), term + " in " + diagram);
+                } finally {
+                    ReflectionTestUtils.setField(searchService, "diagramSummaryFacets", false);
+                }
+            }
+        }
+    }
+
+    private static Map<String, Long> counts(List<FacetContainer> facets) {
+        return facets == null ? Map.of() : facets.stream().collect(Collectors.toMap(FacetContainer::getName, FacetContainer::getCount));
+    }
+
     @Test
     public void testDiagramSearchSummarySmallMolecules() throws SolrSearcherException {
         List<String> species = new ArrayList<>();
@@ -0,0 +1,102 @@
+package org.reactome.server.search.solr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Delay and token budget of the hedged requests
+ */
+public class HedgePolicyTest {
+
+    @Test
+    public void testNoDelayWithoutSamples() {
+        HedgePolicy policy = new HedgePolicy(95, 0.1, 0);
+        for (int i = 0; i < 63; i++) {
+            assertEquals(-1, policy.requested());
+            policy.record(10);
+        }
+        policy.record(10);
+        assertEquals(10, policy.requested());
+    }
+
+    @Test
+    public void testPercentile() {
+        HedgePolicy policy = new HedgePolicy(95, 0.1, 0);
+        List<Long> latencies = new ArrayList<>();
+        for (long i = 1; i <= 64; i++) latencies.add(i);
+        Collections.shuffle(latencies, new Random(42));
+        latencies.forEach(policy::record);
+        // the 61st of 64 sorted latencies
+        assertEquals(61, policy.requested());
+
+        policy = new HedgePolicy(50, 0.1, 0);
+        latencies.forEach(policy::record);
+        assertEquals(32, policy.requested());
+
+        policy = new HedgePolicy(100, 0.1, 0);
+        latencies.forEach(policy::record);
+        assertEquals(64, policy.requested());
+    }
+
+    @Test
+    public void testMinDelay() {
+        HedgePolicy policy = new HedgePolicy(95, 0.1, 20);
+        for (int i = 0; i < 64; i++) policy.record(1);
+        assertEquals(20, policy.requested());
+    }
+
+    @Test
+    public void testWindowForgetsOldLatencies() {
+        HedgePolicy policy = new HedgePolicy(95, 0.1, 0);
+        for (int i = 0; i < 1024; i++) policy.record(1000);
+        assertEquals(1000, policy.requested());
+        for (int i = 0; i < 1024 - 64; i++) policy.record(10);
+        // 64 of the 1024 are still slow, more than the 5%
+        assertEquals(1000, policy.requested());
+        for (int i = 0; i < 64; i++) policy.record(10);
+        assertEquals(10, policy.requested());
+    }
+
+    @Test
+    public void testBudget() {
+        HedgePolicy policy = new HedgePolicy(95, 0.1, 0);
+        for (int i = 0; i < 9; i++) policy.requested();
+        assertFalse(policy.acquire());
+        policy.requested();
+        assertTrue(policy.acquire());
+        assertFalse(policy.acquire());
+        // a token every 10 requests
+        for (int i = 0; i < 20; i++) policy.requested();
+        assertTrue(policy.acquire());
+        assertTrue(policy.acquire());
+        assertFalse(policy.acquire());
+
+        assertEquals(30, policy.getStats().getRequests());
+        assertEquals(3, policy.getStats().getHedged());
+        assertEquals(3, policy.getStats().getRejected());
+    }
+
+    @Test
+    public void testBudgetIsCapped() {
+        HedgePolicy policy = new HedgePolicy(95, 0.5, 0);
+        // a long quiet period does not allow a burst of hedges later
+        for (int i = 0; i < 1000; i++) policy.requested();
+        int hedges = 0;
+        while (policy.acquire()) hedges++;
+        assertEquals(10, hedges);
+    }
+
+    @Test
+    public void testNoBudget() {
+        HedgePolicy policy = new HedgePolicy(95, 0, 0);
+        for (int i = 0; i < 1000; i++) policy.requested();
+        assertFalse(policy.acquire());
+        assertEquals(0, policy.getStats().getHedged());
+    }
+}
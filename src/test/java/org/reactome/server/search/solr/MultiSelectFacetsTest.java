@@ -0,0 +1,192 @@
+package org.reactome.server.search.solr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.util.NamedList;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.search.domain.FacetContainer;
+import org.reactome.server.search.domain.FacetList;
+import org.reactome.server.search.domain.FacetMapping;
+import org.reactome.server.search.domain.Query;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The json.facet requests and the reading of their responses have to agree on the facets asked for (excluded tags),
+ * their names and when the counts without the dropped dimensions are needed.
+ */
+public class MultiSelectFacetsTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final MultiSelectFacets facets = new MultiSelectFacets(true);
+
+    @Test
+    public void testRequest() throws IOException {
+        JsonNode request = MAPPER.readTree(facets.request());
+
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        expected.put("species_facet", List.of("sf"));
+        expected.put("type_facet", List.of("tf"));
+        expected.put("keywords_facet", List.of("kf"));
+        expected.put("compartment_facet", List.of("cf"));
+        assertRequest(expected, request);
+    }
+
+    @Test
+    public void testNoDrop() {
+        Query query = new Query.Builder("apoptosis").forSpecies(list("Homo sapiens")).withTypes(list("Pathway")).build();
+        NamedList<Object> facets = count(120);
+        facets.add("species_facet", buckets("Homo sapiens", 120, "Mus musculus", 80));
+        facets.add("type_facet", buckets("Pathway", 120, "Reaction", 300));
+        facets.add("keywords_facet", buckets("Cell", 40));
+        facets.add("compartment_facet", buckets("cytosol", 60));
+
+        assertNull(this.facets.correction(response(facets), query));
+        FacetMapping mapping = this.facets.toFacetMapping(response(facets), query, true);
+        assertEquals(120, mapping.getTotalNumFount());
+        assertFacets(mapping.getSpeciesFacet(), Map.of("Homo sapiens", 120L), Map.of("Mus musculus", 80L));
+        assertFacets(mapping.getTypeFacet(), Map.of("Pathway", 120L), Map.of("Reaction", 300L));
+        assertFacets(mapping.getKeywordFacet(), Map.of(), Map.of("Cell", 40L));
+        assertFacets(mapping.getCompartmentFacet(), Map.of(), Map.of("cytosol", 60L));
+    }
+
+    @Test
+    public void testPartialDrop() {
+        // Gallus gallus contradicts the type filter, Homo sapiens keeps the species filter in place
+        Query query = new Query.Builder("apoptosis").forSpecies(list("Homo sapiens", "Gallus gallus")).withTypes(list("Pathway")).build();
+        NamedList<Object> facets = count(120);
+        facets.add("species_facet", buckets("Homo sapiens", 120, "Mus musculus", 80));
+        facets.add("type_facet", buckets("Pathway", 120));
+        facets.add("keywords_facet", buckets("Cell", 40));
+        facets.add("compartment_facet", buckets("cytosol", 60));
+
+        assertNull(this.facets.correction(response(facets), query));
+        FacetMapping mapping = this.facets.toFacetMapping(response(facets), query, true);
+        assertEquals(120, mapping.getTotalNumFount());
+        assertFacets(mapping.getSpeciesFacet(), Map.of("Homo sapiens", 120L), Map.of("Mus musculus", 80L));
+        assertFacets(mapping.getTypeFacet(), Map.of("Pathway", 120L), Map.of());
+        assertFacets(mapping.getKeywordFacet(), Map.of(), Map.of("Cell", 40L));
+    }
+
+    @Test
+    public void testFullDrop() throws IOException {
+        // no Homo sapiens Pathway matches: none of the selected species has a count with the type filter and the
+        // selected type has none with the species filter, so both filters are dropped and the total and counts are
+        // the ones without any of them
+        Query query = new Query.Builder("apoptosis").forSpecies(list("Homo sapiens")).withTypes(list("Pathway")).build();
+        NamedList<Object> facets = count(0);
+        facets.add("species_facet", buckets("Mus musculus", 3));
+        facets.add("type_facet", buckets("Reaction", 500));
+
+        String correction = this.facets.correction(response(facets), query);
+        assertNotNull(correction);
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        expected.put("species_facet", List.of("sf", "tf"));
+        expected.put("type_facet", List.of("sf", "tf"));
+        expected.put("keywords_facet", List.of("sf", "tf", "kf"));
+        expected.put("compartment_facet", List.of("sf", "tf", "cf"));
+        expected.put("total", List.of("sf", "tf"));
+        assertRequest(expected, MAPPER.readTree(correction));
+
+        NamedList<Object> corrected = count(0);
+        corrected.add("species_facet", buckets("Homo sapiens", 500, "Mus musculus", 80));
+        corrected.add("type_facet", buckets("Pathway", 3, "Reaction", 900));
+        corrected.add("keywords_facet", buckets("Cell", 45, "Membrane", 5));
+        corrected.add("compartment_facet", buckets("cytosol", 60));
+        corrected.add("total", count(1000));
+
+        FacetMapping mapping = this.facets.toFacetMapping(response(facets), response(corrected), query);
+        assertEquals(1000, mapping.getTotalNumFount());
+        assertFacets(mapping.getSpeciesFacet(), Map.of(), Map.of("Homo sapiens", 500L, "Mus musculus", 80L));
+        assertFacets(mapping.getTypeFacet(), Map.of(), Map.of("Pathway", 3L, "Reaction", 900L));
+        assertFacets(mapping.getKeywordFacet(), Map.of(), Map.of("Cell", 45L, "Membrane", 5L));
+        assertFacets(mapping.getCompartmentFacet(), Map.of(), Map.of("cytosol", 60L));
+
+        // without correcting, the selection is kept as it is
+        mapping = this.facets.toFacetMapping(response(facets), query, false);
+        assertEquals(0, mapping.getTotalNumFount());
+        assertFacets(mapping.getSpeciesFacet(), Map.of(), Map.of("Mus musculus", 3L));
+        assertFacets(mapping.getTypeFacet(), Map.of(), Map.of("Reaction", 500L));
+    }
+
+    @Test
+    public void testDropWithOneDimensionLeft() throws IOException {
+        // the keyword contradicts the species, which is kept: only the keyword filter is excluded
+        Query query = new Query.Builder("apoptosis").forSpecies(list("Homo sapiens")).withKeywords(list("Binds")).build();
+        NamedList<Object> facets = count(0);
+        facets.add("species_facet", buckets("Homo sapiens", 120));
+        facets.add("keywords_facet", buckets("Cell", 4));
+
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        expected.put("species_facet", List.of("sf", "kf"));
+        expected.put("type_facet", List.of("tf", "kf"));
+        expected.put("keywords_facet", List.of("kf"));
+        expected.put("compartment_facet", List.of("kf", "cf"));
+        expected.put("total", List.of("kf"));
+        assertRequest(expected, MAPPER.readTree(this.facets.correction(response(facets), query)));
+    }
+
+    private static void assertRequest(Map<String, List<String>> expected, JsonNode request) {
+        Set<String> names = new LinkedHashSet<>();
+        request.fieldNames().forEachRemaining(names::add);
+        assertEquals(expected.keySet(), names);
+        expected.forEach((name, tags) -> {
+            JsonNode facet = request.get(name);
+            assertEquals(name.equals("total") ? "query" : "terms", facet.get("type").asText(), name);
+            if (!name.equals("total")) assertEquals(name, facet.get("field").asText());
+            List<String> excluded = new ArrayList<>();
+            facet.get("domain").get("excludeTags").forEach(tag -> excluded.add(tag.asText()));
+            assertEquals(tags, excluded, name);
+        });
+    }
+
+    private static List<String> list(String... values) {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+
+    private static NamedList<Object> count(long count) {
+        NamedList<Object> rtn = new NamedList<>();
+        rtn.add("count", count);
+        return rtn;
+    }
+
+    /**
+     * @param values alternating value and count of each bucket
+     */
+    private static NamedList<Object> buckets(Object... values) {
+        List<NamedList<Object>> buckets = new ArrayList<>();
+        for (int i = 0; i < values.length; i += 2) {
+            NamedList<Object> bucket = new NamedList<>();
+            bucket.add("val", values[i]);
+            bucket.add("count", ((Number) values[i + 1]).longValue());
+            buckets.add(bucket);
+        }
+        NamedList<Object> rtn = new NamedList<>();
+        rtn.add("buckets", buckets);
+        return rtn;
+    }
+
+    private static QueryResponse response(NamedList<Object> facets) {
+        NamedList<Object> response = new NamedList<>();
+        response.add("facets", facets);
+        QueryResponse rtn = new QueryResponse();
+        rtn.setResponse(response);
+        return rtn;
+    }
+
+    private static void assertFacets(FacetList facetList, Map<String, Long> selected, Map<String, Long> available) {
+        assertEquals(selected, counts(facetList.getSelected()));
+        assertEquals(available, counts(facetList.getAvailable()));
+    }
+
+    private static Map<String, Long> counts(List<FacetContainer> containers) {
+        Map<String, Long> rtn = new HashMap<>();
+        for (FacetContainer container : containers) rtn.put(container.getName(), container.getCount());
+        return rtn;
+    }
+}
@@ -0,0 +1,122 @@
+package org.reactome.server.search.solr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks OccurrenceCursor against the split(":") based parsing it replaced. Where both differ (values the split
+ * could not parse and empty list elements) the expected behaviour of the cursor is asserted explicitly.
+ */
+public class OccurrenceCursorTest {
+
+    private final OccurrenceCursor cursor = new OccurrenceCursor();
+
+    @Test
+    public void testSameAsSplit() {
+        for (String value : List.of(
+                "R-HSA-123:true:R-HSA-1,R-HSA-2:R-HSA-3",
+                "R-HSA-123:false:R-HSA-1:#",
+                "R-HSA-123:true:#:R-HSA-3,R-HSA-4",
+                "R-HSA-123:false:#:#",
+                "R-HSA-123:TRUE:R-HSA-1:#",
+                "R-HSA-123:True:#:#",
+                "R-HSA-123:yes:#:#",
+                "R-HSA-123:true:R-HSA-1,R-HSA-2,:#")) {
+            assertTrue(cursor.reset(value), value);
+            String[] line = value.split(":");
+            assertEquals(line[0], cursor.diagram(), value);
+            assertEquals(Boolean.valueOf(line[1]), cursor.inDiagram(), value);
+            assertEquals(splitList(line[2]), cursor.occurrences(), value);
+            assertEquals(splitList(line[3]), cursor.interactsWith(), value);
+            assertEquals(!line[2].equals("#"), cursor.hasOccurrences(), value);
+            assertEquals(!line[3].equals("#"), cursor.hasInteractsWith(), value);
+        }
+    }
+
+    @Test
+    public void testFlags() {
+        assertTrue(cursor.reset("R-HSA-123:TRUE:#:#"));
+        assertTrue(cursor.inDiagram());
+        assertTrue(cursor.reset("R-HSA-123:false:#:#"));
+        assertFalse(cursor.inDiagram());
+        assertTrue(cursor.reset("R-HSA-123:FALSE:#:#"));
+        assertFalse(cursor.inDiagram());
+        assertTrue(cursor.reset("R-HSA-123:truee:#:#"));
+        assertFalse(cursor.inDiagram());
+        assertTrue(cursor.reset("R-HSA-123::#:#"));
+        assertFalse(cursor.inDiagram());
+    }
+
+    @Test
+    public void testThreeFields() {
+        // split(":") had no fourth element for these values and failed
+        assertFalse(cursor.reset("R-HSA-123:true:R-HSA-1,R-HSA-2"));
+
+        // an empty fourth field, which split(":") dropped, is read as no interactors
+        assertTrue(cursor.reset("R-HSA-123:false:R-HSA-1:"));
+        assertEquals("R-HSA-123", cursor.diagram());
+        assertFalse(cursor.inDiagram());
+        assertEquals(List.of("R-HSA-1"), cursor.occurrences());
+        assertFalse(cursor.hasInteractsWith());
+        assertTrue(cursor.interactsWith().isEmpty());
+
+        // further fields are ignored, as they were
+        assertTrue(cursor.reset("R-HSA-123:true:R-HSA-1:R-HSA-2:R-HSA-3"));
+        assertEquals(List.of("R-HSA-2"), cursor.interactsWith());
+    }
+
+    @Test
+    public void testEmptyListElements() {
+        // split(",") kept empty elements in the middle of a list, the cursor leaves them out
+        assertTrue(cursor.reset("R-HSA-123:true:R-HSA-1,,R-HSA-2:,R-HSA-3"));
+        assertEquals(List.of("R-HSA-1", "R-HSA-2"), cursor.occurrences());
+        assertEquals(List.of("R-HSA-3"), cursor.interactsWith());
+
+        assertTrue(cursor.reset("R-HSA-123:true::#"));
+        assertFalse(cursor.hasOccurrences());
+        assertTrue(cursor.occurrences().isEmpty());
+    }
+
+    @Test
+    public void testListsAreReusedAcrossResets() {
+        assertTrue(cursor.reset("R-HSA-1:true:R-HSA-10:R-HSA-11"));
+        assertEquals(List.of("R-HSA-10"), cursor.occurrences());
+        assertTrue(cursor.reset("R-HSA-2:true:#:#"));
+        assertTrue(cursor.occurrences().isEmpty());
+        assertTrue(cursor.interactsWith().isEmpty());
+    }
+
+    @Test
+    public void testDiagram() {
+        assertTrue(cursor.reset("R-HSA-123:true:#:#"));
+        assertFalse(cursor.isDiagram("R-HSA-1"));
+        assertFalse(cursor.isDiagram("R-HSA-1234"));
+        assertTrue(cursor.isDiagram("R-HSA-123"));
+        assertTrue(cursor.startsWith("R-HSA-1"));
+        assertTrue(cursor.startsWith("R-HSA-123:"));
+        assertFalse(cursor.startsWith("R-HSA-2"));
+        assertFalse(cursor.startsWith("R-HSA-123:true:#:#:"));
+    }
+
+    @Test
+    public void testMalformed() {
+        assertFalse(cursor.reset(""));
+        assertFalse(cursor.reset("R-HSA-123"));
+        assertFalse(cursor.reset("R-HSA-123:true"));
+        assertFalse(cursor.reset("R-HSA-123:true:"));
+        assertFalse(cursor.reset("R-HSA-123:true#R-HSA-1#R-HSA-2"));
+    }
+
+    /**
+     * The list parsing that was replaced, with an empty list instead of null for "#"
+     */
+    private static List<String> splitList(String field) {
+        return field.equals("#") ? new ArrayList<>() : Stream.of(field.split(",")).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,201 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.search.domain.HedgeStats;
+import org.reactome.server.search.util.SearchExecutor;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hedged requests over two replicas whose answers follow a script: step 0 is the answer of the replica the query hashes
+ * to (affinity), which gets the first attempt, and step 1 the answer of the other one (the hedge or the retry). That
+ * replica is found with a first request sent before the policy has any samples, so it is not hedged.
+ */
+public class ReplicaSolrClientTest {
+
+    @FunctionalInterface
+    private interface Step {
+        NamedList<Object> answer(int replica) throws SolrServerException, IOException;
+    }
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    private final SearchExecutor executor = new SearchExecutor(false);
+    private List<Step> script;
+    private volatile String first;
+    private ReplicaSolrClient client;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (client != null) client.close();
+        executor.destroy();
+    }
+
+    @Test
+    public void testHedgeWins() throws Exception {
+        HedgePolicy policy = policy(1);
+        script = List.of(answer(10000), answer(0));
+        assertEquals(1, request().get("replica"));
+
+        // the first attempt is cancelled
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        HedgeStats stats = policy.getStats();
+        assertEquals(1, stats.getHedged());
+        assertEquals(1, stats.getWins());
+    }
+
+    @Test
+    public void testFirstAnswersAfterTheDelay() throws Exception {
+        HedgePolicy policy = policy(1);
+        script = List.of(answer(100), answer(10000));
+        assertEquals(0, request().get("replica"));
+
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals(1, policy.getStats().getHedged());
+        assertEquals(0, policy.getStats().getWins());
+    }
+
+    @Test
+    public void testFirstFailsAfterTheHedge() throws Exception {
+        HedgePolicy policy = policy(1);
+        script = List.of(fail(100, new SolrServerException("Connection reset")), answer(300));
+        assertEquals(1, request().get("replica"));
+        assertEquals(1, policy.getStats().getWins());
+    }
+
+    @Test
+    public void testHedgeFails() throws Exception {
+        HedgePolicy policy = policy(1);
+        script = List.of(answer(200), fail(0, new IOException("Connection refused")));
+        assertEquals(0, request().get("replica"));
+        assertEquals(1, policy.getStats().getHedged());
+        assertEquals(0, policy.getStats().getWins());
+    }
+
+    @Test
+    public void testBothFail() throws Exception {
+        policy(1);
+        script = List.of(fail(100, new SolrServerException("Connection reset")), fail(0, new IOException("Connection refused")));
+        SolrServerException e = assertThrows(SolrServerException.class, this::request);
+        assertEquals("Connection reset", e.getMessage());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testQueryErrorIsTheAnswer() throws Exception {
+        policy(1);
+        script = List.of(answer(10000), fail(0, new SolrException(SolrException.ErrorCode.BAD_REQUEST, "undefined field")));
+        SolrException e = assertThrows(SolrException.class, this::request);
+        assertEquals(400, e.code());
+
+        // the first attempt is not waited for
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailureBeforeTheDelayIsRetried() throws Exception {
+        HedgePolicy policy = policy(1);
+        script = List.of(fail(0, new IOException("Connection refused")), answer(0));
+        assertEquals(1, request().get("replica"));
+        assertEquals(0, policy.getStats().getHedged());
+    }
+
+    @Test
+    public void testNoBudget() throws Exception {
+        HedgePolicy policy = policy(0);
+        script = List.of(answer(100), answer(0));
+        assertEquals(0, request().get("replica"));
+        assertEquals(1, calls.get());
+        assertEquals(0, policy.getStats().getHedged());
+        assertEquals(1, policy.getStats().getRejected());
+    }
+
+    /**
+     * @return a policy hedging after 20 milliseconds, for a new client over two replicas
+     */
+    private HedgePolicy policy(double budget) throws SolrServerException, IOException {
+        HedgePolicy policy = new HedgePolicy(95, budget, 20);
+        Map<String, SolrClientFactory.PooledClient> replicas = new LinkedHashMap<>();
+        replicas.put("http://replica1/solr", new SolrClientFactory.PooledClient(new ScriptedClient("http://replica1/solr"), () -> null));
+        replicas.put("http://replica2/solr", new SolrClientFactory.PooledClient(new ScriptedClient("http://replica2/solr"), () -> null));
+        client = new ReplicaSolrClient(replicas, "reactome", true, 3, 60000, policy, executor);
+        request();
+        for (int i = 0; i < 63; i++) policy.record(1);
+        calls.set(0);
+        return policy;
+    }
+
+    private NamedList<Object> request() throws SolrServerException, IOException {
+        return client.request(new QueryRequest(new SolrQuery("apoptosis")), "reactome");
+    }
+
+    private Step answer(long millis) {
+        return replica -> {
+            sleep(millis);
+            NamedList<Object> rtn = new NamedList<>();
+            rtn.add("replica", replica);
+            return rtn;
+        };
+    }
+
+    private Step fail(long millis, Exception e) {
+        return replica -> {
+            sleep(millis);
+            if (e instanceof SolrServerException) throw (SolrServerException) e;
+            if (e instanceof IOException) throw (IOException) e;
+            throw (RuntimeException) e;
+        };
+    }
+
+    private void sleep(long millis) throws SolrServerException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw new SolrServerException(e);
+        }
+    }
+
+    private class ScriptedClient extends SolrClient {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String url;
+
+        private ScriptedClient(String url) {
+            this.url = url;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes") // the signature of SolrClient
+        public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+            calls.incrementAndGet();
+            if (first == null) {
+                first = url;
+                return new NamedList<>();
+            }
+            int replica = url.equals(first) ? 0 : 1;
+            return script.get(replica).answer(replica);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.reactome.server.search.solr;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.search.domain.CacheStats;
+import org.reactome.server.search.exception.SolrSearcherException;
+import org.reactome.server.search.util.SearchExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Freshness, stale-while-revalidate, fallback, generations and weight based eviction of the result cache, with
+ * loaders that count how many times Solr would have been queried
+ */
+public class ResultCacheTest {
+
+    private final SearchExecutor executor = new SearchExecutor(false);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    public void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    public void testFresh() throws Exception {
+        ResultCache cache = cache(1000, 60000, 60000);
+        assertEquals("v1", cache.get("key", loader("v1"), String::length));
+        assertEquals("v1", cache.get("key", loader("v2"), String::length));
+        assertEquals(1, loads.get());
+
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEntries());
+        assertEquals(2, stats.getWeight());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        ResultCache cache = cache(1000, 50, 60000);
+        cache.get("key", loader("v1"), String::length);
+        Thread.sleep(100);
+
+        // served stale while a single refresh runs in the background
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ResultCache.Loader<String> refresh = () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "v2";
+        };
+        assertEquals("v1", cache.get("key", refresh, String::length));
+        assertEquals("v1", cache.get("key", refresh, String::length));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.getStats().getStaleHits());
+
+        release.countDown();
+        awaitValue(cache, "v2");
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void testFailedRefreshIsRetried() throws Exception {
+        ResultCache cache = cache(1000, 50, 60000);
+        cache.get("key", loader("v1"), String::length);
+        Thread.sleep(100);
+
+        CountDownLatch failed = new CountDownLatch(1);
+        assertEquals("v1", cache.get("key", () -> {
+            failed.countDown();
+            throw new SolrSearcherException("Solr is unavailable");
+        }, String::length));
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+
+        // the next stale hit refreshes again
+        long deadline = System.currentTimeMillis() + 10000;
+        while (loads.get() < 2) {
+            assertTrue(System.currentTimeMillis() < deadline, "Not refreshed again");
+            cache.get("key", loader("v2"), String::length);
+            Thread.sleep(5);
+        }
+        awaitValue(cache, "v2");
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        ResultCache cache = cache(1000, 50, 50);
+        cache.get("key", loader("v1"), String::length);
+        Thread.sleep(150);
+
+        // past ttl + staleWhileRevalidate it is loaded again before answering
+        assertEquals("v2", cache.get("key", loader("v2"), String::length));
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.getStats().getMisses());
+        assertEquals(0, cache.getStats().getStaleHits());
+    }
+
+    @Test
+    public void testExpiredServedWhenSolrFails() throws Exception {
+        ResultCache cache = cache(1000, 50, 0);
+        cache.get("key", loader("v1"), String::length);
+        Thread.sleep(100);
+
+        assertEquals("v1", cache.get("key", () -> {
+            throw new SolrSearcherException("Solr is unavailable");
+        }, String::length));
+        assertEquals(1, cache.getStats().getStaleHits());
+
+        // nothing to fall back on
+        assertThrows(SolrSearcherException.class, () -> cache.get("other", () -> {
+            throw new SolrSearcherException("Solr is unavailable");
+        }, String::length));
+    }
+
+    @Test
+    public void testLoadFromPreviousGenerationIsDropped() throws Exception {
+        ResultCache cache = cache(1000, 60000, 60000);
+        // the index changes while the result is loaded
+        assertEquals("v1", cache.get("key", () -> {
+            loads.incrementAndGet();
+            cache.invalidateAll();
+            return "v1";
+        }, String::length));
+        assertEquals(0, cache.getStats().getEntries());
+
+        assertEquals("v2", cache.get("key", loader("v2"), String::length));
+        assertEquals("v2", cache.get("key", loader("v3"), String::length));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testAsyncLoadFromPreviousGenerationIsDropped() throws Exception {
+        ResultCache cache = cache(1000, 60000, 60000);
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        CompletableFuture<String> result = cache.getAsync("key", () -> loading, String::length);
+        cache.invalidateAll();
+        loading.complete("v1");
+        assertEquals("v1", result.get());
+        assertEquals(0, cache.getStats().getEntries());
+
+        cache.getAsync("key", () -> CompletableFuture.completedFuture("v2"), String::length).get();
+        assertEquals("v2", cache.getAsync("key", () -> CompletableFuture.completedFuture("v3"), String::length).get());
+        assertEquals(1, cache.getStats().getHits());
+    }
+
+    @Test
+    public void testRefreshFromPreviousGenerationIsDropped() throws Exception {
+        ResultCache cache = cache(1000, 50, 60000);
+        cache.get("key", loader("v1"), String::length);
+        Thread.sleep(100);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch refreshed = new CountDownLatch(1);
+        assertEquals("v1", cache.get("key", () -> {
+            await(release);
+            refreshed.countDown();
+            return "v2";
+        }, String::length));
+        cache.invalidateAll();
+        release.countDown();
+        assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        assertEquals(0, cache.getStats().getEntries());
+        assertEquals("v3", cache.get("key", loader("v3"), String::length));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        ResultCache cache = cache(10, 60000, 60000);
+        cache.get("a", loader("aaaa"), String::length);
+        cache.get("b", loader("bbbb"), String::length);
+        cache.get("a", loader("aaaa"), String::length);
+        cache.get("c", loader("cccc"), String::length);
+
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getEvictions());
+        assertEquals(2, stats.getEntries());
+        assertEquals(8, stats.getWeight());
+
+        loads.set(0);
+        cache.get("a", loader("aaaa"), String::length);
+        cache.get("c", loader("cccc"), String::length);
+        assertEquals(0, loads.get());
+        cache.get("b", loader("bbbb"), String::length);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testHeavyEntryEvictsSeveral() throws Exception {
+        ResultCache cache = cache(10, 60000, 60000);
+        cache.get("a", loader("aaa"), String::length);
+        cache.get("b", loader("bbb"), String::length);
+        cache.get("c", loader("ccc"), String::length);
+        cache.get("d", loader("dddddddd"), String::length);
+
+        CacheStats stats = cache.getStats();
+        assertEquals(3, stats.getEvictions());
+        assertEquals(1, stats.getEntries());
+        assertEquals(8, stats.getWeight());
+    }
+
+    @Test
+    public void testNotCached() throws Exception {
+        ResultCache cache = cache(10, 60000, 60000);
+        // heavier than the whole cache, or weighing 0
+        cache.get("heavy", loader("heavier than ten"), String::length);
+        cache.get("empty", loader(""), String::length);
+        cache.get("heavy", loader("heavier than ten"), String::length);
+        cache.get("empty", loader(""), String::length);
+        assertEquals(4, loads.get());
+        assertEquals(0, cache.getStats().getEntries());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        ResultCache cache = new ResultCache(false, 1000, 60000, 60000, executor, mock(IndexVersionMonitor.class));
+        cache.get("key", loader("v1"), String::length);
+        assertEquals("v2", cache.get("key", loader("v2"), String::length));
+        assertEquals(2, loads.get());
+    }
+
+    private ResultCache cache(long maxWeight, long ttl, long staleWhileRevalidate) {
+        return new ResultCache(true, maxWeight, ttl, staleWhileRevalidate, executor, mock(IndexVersionMonitor.class));
+    }
+
+    private ResultCache.Loader<String> loader(String value) {
+        return () -> {
+            loads.incrementAndGet();
+            return value;
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Waits for the refreshed value (without loading it if it is not there yet)
+     */
+    private static void awaitValue(ResultCache cache, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!expected.equals(cache.get("key", () -> {
+            throw new AssertionError("Loaded while the refresh runs");
+        }, String::length))) {
+            assertTrue(System.currentTimeMillis() < deadline, "Not refreshed");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.reactome.server.search.solr;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.search.domain.BulkheadStats;
+import org.reactome.server.search.domain.CircuitBreakerStats;
+import org.reactome.server.search.exception.SolrSearcherException;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.reactome.server.search.solr.SolrGuard.Bulkhead.*;
+
+/**
+ * Transitions of the circuit breaker and rejections of the bulkheads, with calls that answer or fail on demand
+ */
+public class SolrGuardTest {
+
+    private SolrGuard guard;
+
+    @AfterEach
+    public void tearDown() {
+        if (guard != null) guard.destroy();
+    }
+
+    @Test
+    public void testBreakerOpensAndCloses() throws Exception {
+        guard = breaker(4, 4, 5000, 50);
+        AtomicBoolean available = new AtomicBoolean(false);
+        guard.probeWith(available::get);
+
+        succeed(SEARCH);
+        succeed(SEARCH);
+        fail(SEARCH);
+        assertEquals("CLOSED", guard.getCircuitBreakerStats().getState());
+        fail(SEARCH);
+        CircuitBreakerStats stats = guard.getCircuitBreakerStats();
+        assertEquals("OPEN", stats.getState());
+        assertEquals(1, stats.getOpened());
+
+        // fails fast without running the call
+        assertThrows(SolrSearcherException.class, () -> guard.call(SEARCH, () -> {
+            throw new AssertionError("Called while the breaker is open");
+        }));
+        assertEquals(1, guard.getCircuitBreakerStats().getRejected());
+
+        // the probe fails, so it opens for another openDuration
+        stats = awaitStats(s -> s.getOpened() >= 2);
+        assertTrue(stats.getHalfOpened() >= 1);
+        assertEquals(0, stats.getClosed());
+
+        available.set(true);
+        stats = awaitStats(s -> s.getState().equals("CLOSED"));
+        assertEquals(stats.getOpened(), stats.getHalfOpened());
+        assertEquals(1, stats.getClosed());
+        assertEquals("answer", guard.call(SEARCH, () -> "answer"));
+    }
+
+    @Test
+    public void testBreakerStartsAnewAfterClosing() throws Exception {
+        guard = breaker(4, 4, 5000, 20);
+        guard.probeWith(() -> true);
+        for (int i = 0; i < 4; i++) fail(SEARCH);
+        awaitStats(s -> s.getClosed() == 1);
+
+        // the failures that opened it are not counted again
+        fail(SEARCH);
+        assertEquals("CLOSED", guard.getCircuitBreakerStats().getState());
+        fail(SEARCH);
+        succeed(SEARCH);
+        succeed(SEARCH);
+        assertEquals("OPEN", guard.getCircuitBreakerStats().getState());
+    }
+
+    @Test
+    public void testWindowForgetsOldOutcomes() throws Exception {
+        guard = breaker(4, 4, 5000, 60000);
+        fail(SEARCH);
+        succeed(SEARCH);
+        succeed(SEARCH);
+        succeed(SEARCH);
+        // wraps around, the first failure leaves the window
+        succeed(SEARCH);
+        fail(SEARCH);
+        assertEquals("CLOSED", guard.getCircuitBreakerStats().getState());
+        fail(SEARCH);
+        assertEquals("OPEN", guard.getCircuitBreakerStats().getState());
+    }
+
+    @Test
+    public void testMinCalls() throws Exception {
+        guard = breaker(10, 4, 5000, 60000);
+        fail(SEARCH);
+        fail(SEARCH);
+        fail(SEARCH);
+        assertEquals("CLOSED", guard.getCircuitBreakerStats().getState());
+        fail(SEARCH);
+        assertEquals("OPEN", guard.getCircuitBreakerStats().getState());
+    }
+
+    @Test
+    public void testQueryErrorsAreNotFailures() throws Exception {
+        guard = breaker(4, 4, 5000, 60000);
+        for (int i = 0; i < 8; i++) {
+            assertThrows(SolrException.class, () -> guard.call(SEARCH, () -> {
+                throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "undefined field");
+            }));
+        }
+        assertEquals("CLOSED", guard.getCircuitBreakerStats().getState());
+        for (int i = 0; i < 2; i++) {
+            assertThrows(SolrException.class, () -> guard.call(SEARCH, () -> {
+                throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "out of memory");
+            }));
+        }
+        assertEquals("OPEN", guard.getCircuitBreakerStats().getState());
+    }
+
+    @Test
+    public void testBatchCallsAreNotSlow() throws Exception {
+        // every call is slow with a threshold of 0 milliseconds
+        guard = breaker(4, 4, 0, 60000);
+        for (int i = 0; i < 8; i++) succeed(BATCH);
+        assertEquals("CLOSED", guard.getCircuitBreakerStats().getState());
+        for (int i = 0; i < 3; i++) succeed(SEARCH);
+        assertEquals("CLOSED", guard.getCircuitBreakerStats().getState());
+        succeed(SEARCH);
+        assertEquals("OPEN", guard.getCircuitBreakerStats().getState());
+    }
+
+    @Test
+    public void testBulkheadRejects() throws Exception {
+        guard = new SolrGuard(true, 1, 1, 1, 1, 1, 0, false, 50, 20, 0.5, 5000, 0.8, 10000);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> blocked = executor.submit(() -> guard.call(SEARCH, () -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SolrServerException(e);
+                }
+                return "answer";
+            }));
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+
+            assertThrows(SolrSearcherException.class, () -> guard.call(SEARCH, () -> "rejected"));
+            // the other bulkheads are not affected
+            assertEquals("suggestion", guard.call(SUGGEST, () -> "suggestion"));
+            BulkheadStats search = bulkhead(SEARCH);
+            assertEquals(1, search.getLimit());
+            assertEquals(1, search.getInFlight());
+            assertEquals(1, search.getRejected());
+            assertEquals(0, bulkhead(SUGGEST).getRejected());
+
+            release.countDown();
+            assertEquals("answer", blocked.get(10, TimeUnit.SECONDS));
+            assertEquals(0, bulkhead(SEARCH).getInFlight());
+            assertEquals("answer", guard.call(SEARCH, () -> "answer"));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBulkheadReleasesOnFailure() throws Exception {
+        guard = new SolrGuard(true, 1, 1, 1, 1, 1, 0, false, 50, 20, 0.5, 5000, 0.8, 10000);
+        fail(FACET);
+        assertEquals(0, bulkhead(FACET).getInFlight());
+        succeed(FACET);
+        assertEquals(0, bulkhead(FACET).getRejected());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        guard = new SolrGuard(false, 1, 1, 1, 1, 1, 0, false, 50, 20, 0.5, 5000, 0.8, 10000);
+        for (int i = 0; i < 100; i++) fail(SEARCH);
+        succeed(SEARCH);
+        assertTrue(guard.getBulkheadStats().isEmpty());
+        assertNull(guard.getCircuitBreakerStats());
+    }
+
+    /**
+     * @return a guard without bulkheads, opening at a rate of failures of 0.5 or of slow calls of 0.8
+     */
+    private static SolrGuard breaker(int window, int minCalls, long slowCall, long openDuration) {
+        return new SolrGuard(false, 8, 32, 16, 8, 8, 1000, true, window, minCalls, 0.5, slowCall, 0.8, openDuration);
+    }
+
+    private void succeed(SolrGuard.Bulkhead bulkhead) throws Exception {
+        assertEquals("answer", guard.call(bulkhead, () -> "answer"));
+    }
+
+    private void fail(SolrGuard.Bulkhead bulkhead) {
+        assertThrows(SolrServerException.class, () -> guard.call(bulkhead, () -> {
+            throw new SolrServerException("Connection refused");
+        }));
+    }
+
+    private BulkheadStats bulkhead(SolrGuard.Bulkhead bulkhead) {
+        return guard.getBulkheadStats().stream().filter(s -> s.getName().equals(bulkhead.name())).findFirst().orElseThrow();
+    }
+
+    private CircuitBreakerStats awaitStats(Predicate<CircuitBreakerStats> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        CircuitBreakerStats stats = guard.getCircuitBreakerStats();
+        while (!condition.test(stats)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out, breaker is " + stats.getState());
+            Thread.sleep(5);
+            stats = guard.getCircuitBreakerStats();
+        }
+        return stats;
+    }
+}